@@ -0,0 +1,106 @@
+package org.example;
+
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.cert.X509v3CertificateBuilder;
+import org.bouncycastle.cert.jcajce.JcaX509CertificateConverter;
+import org.bouncycastle.cert.jcajce.JcaX509v3CertificateBuilder;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.bouncycastle.operator.ContentSigner;
+import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.math.BigInteger;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.SecureRandom;
+import java.security.Security;
+import java.security.cert.X509Certificate;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Построение сертификата и подпись ключом издателя; пара субъекта готова заранее.
+//
+// perCallSetup — прежний CertIssuer.issue: addProvider, новый подписант, конвертер и
+// SecureRandom на каждый сертификат. issue — подписант и конвертер, закреплённые за потоком.
+// issueBatch — пакет из BATCH сертификатов одним проходом (время — на один сертификат).
+// Варианты *Contended — то же из 4 потоков: там видна борьба за общие замки.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class CertificateSigningBenchmark {
+    private static final int BATCH = 16;
+
+    @Param({"rsa2048", "ec-p256", "ed25519"})
+    public String issuerAlg;
+
+    private CertIssuer issuer;
+    private PrivateKey issuerKey;
+    private X500Name issuerName;
+    private PublicKey subjectKey;
+    private List<String> batchCns;
+    private List<PublicKey> batchKeys;
+
+    @Setup
+    public void setup() throws Exception {
+        Security.addProvider(new BouncyCastleProvider());
+        issuerKey = KeyAlgorithm.parse(issuerAlg).generate().getPrivate();
+        issuerName = new X500Name("CN=BenchIssuer");
+        issuer = new CertIssuer(issuerKey, issuerName);
+        subjectKey = KeyAlgorithm.EC_P256.generate().getPublic();
+        batchCns = Collections.nCopies(BATCH, "bench-host");
+        batchKeys = Collections.nCopies(BATCH, subjectKey);
+    }
+
+    @Benchmark
+    public X509Certificate perCallSetup() throws Exception {
+        return issueFresh();
+    }
+
+    @Benchmark
+    public X509Certificate issue() throws Exception {
+        return issuer.issue("bench-host", subjectKey);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public List<X509Certificate> issueBatch() throws Exception {
+        return issuer.issueAll(batchCns, batchKeys);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public X509Certificate perCallSetupContended() throws Exception {
+        return issueFresh();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public X509Certificate issueContended() throws Exception {
+        return issuer.issue("bench-host", subjectKey);
+    }
+
+    // Копия прежней реализации CertIssuer.issue — точка отсчёта.
+    private X509Certificate issueFresh() throws Exception {
+        Security.addProvider(new BouncyCastleProvider());
+        BigInteger serial = new BigInteger(160, new SecureRandom());
+        Date notBefore = Date.from(ZonedDateTime.now().minus(1, ChronoUnit.MINUTES).toInstant());
+        Date notAfter = Date.from(ZonedDateTime.now().plus(365, ChronoUnit.DAYS).toInstant());
+        X509v3CertificateBuilder builder = new JcaX509v3CertificateBuilder(
+                issuerName, serial, notBefore, notAfter, new X500Name("CN=bench-host"), subjectKey);
+        ContentSigner signer = new JcaContentSignerBuilder(issuer.signatureAlgorithm).build(issuerKey);
+        return new JcaX509CertificateConverter().setProvider("BC").getCertificate(builder.build(signer));
+    }
+}
@@ -0,0 +1,147 @@
+package org.example;
+
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.InetSocketAddress;
+import java.nio.channels.SocketChannel;
+import java.security.KeyPair;
+import java.security.Security;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Масштабирование кластера: сколько новых имён в секунду выпускают 1, 2, ... --nodes узлов.
+// Узлы поднимаются в этом же процессе на соседних портах, у каждого --gens генераторов;
+// на каждый узел — свой AsyncKeyClient с --inflight неотвеченными запросами, имена
+// уникальные, так что большая их часть пересылается владельцу, как в настоящем кластере.
+// Узлы делят процессоры одной машины: рост осмыслен, пока nodes × gens не больше ядер.
+// Запуск из jmh-jar: ./gradlew jmhJar, затем
+// java -cp build/libs/Task_1-1.0-SNAPSHOT-jmh.jar org.example.ClusterBenchmark --nodes 4
+class ClusterBenchmark {
+    public static void main(String[] args) throws Exception {
+        int cpus = Runtime.getRuntime().availableProcessors();
+        int maxNodes = Math.max(1, Math.min(4, cpus));
+        int gens = 1;
+        int inflight = 64;
+        int seconds = 10;
+        int basePort = 5800;
+        KeyAlgorithm alg = KeyAlgorithm.RSA_2048;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--nodes": maxNodes = Integer.parseInt(args[++i]); break;
+                case "--gens": gens = Integer.parseInt(args[++i]); break;
+                case "--inflight": inflight = Integer.parseInt(args[++i]); break;
+                case "--seconds": seconds = Integer.parseInt(args[++i]); break;
+                case "--port": basePort = Integer.parseInt(args[++i]); break;
+                case "--key-alg": alg = KeyAlgorithm.parse(args[++i]); break;
+                default: System.err.println("Unknown arg " + args[i]); System.exit(1);
+            }
+        }
+
+        Security.addProvider(new BouncyCastleProvider());
+        KeyPair issuer = KeyAlgorithm.EC_P256.generate();
+        PrintStream out = System.out;
+        // построчный лог серверов здесь только мешает измерению; при остановке прогона узлы
+        // бросают недоделанную очередь — это предупреждение тоже не нужно
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        Log.setLevel(Log.Level.ERROR);
+        out.printf("cpus=%d gens/node=%d key-alg=%s inflight/node=%d%n", cpus, gens, alg.id(), inflight);
+
+        double single = 0;
+        for (int nodes = 1; nodes <= maxNodes; nodes++) {
+            // каждый прогон — на своих портах: прежние могут ещё висеть в TIME_WAIT
+            int port = basePort + (nodes - 1) * maxNodes;
+            double rate = run(port, nodes, gens, alg, inflight, seconds, issuer);
+            if (nodes == 1) single = rate;
+            out.printf("nodes=%-2d %10.1f names/s  x%.2f of 1 node (ideal x%d)%n", nodes, rate, rate / single, nodes);
+        }
+        System.exit(0);
+    }
+
+    // новых имён в секунду по всем узлам
+    private static double run(int port, int nodes, int gens, KeyAlgorithm alg, int inflight, int seconds,
+                              KeyPair issuer) throws Exception {
+        StringBuilder peers = new StringBuilder();
+        for (int k = 0; k < nodes; k++) peers.append(k == 0 ? "" : ",").append("localhost:").append(port + k);
+        List<KeyServer> servers = new ArrayList<>();
+        for (int k = 0; k < nodes; k++) {
+            KeyServer.Options opts = new KeyServer.Options();
+            opts.port = port + k;
+            opts.gens = gens;
+            opts.keyAlgorithm = alg;
+            opts.keyPoolSize = 0;
+            opts.keyPoolRefillers = 0;
+            opts.drainSeconds = 0;
+            opts.genQueue = 64 * 1024;
+            opts.peers = peers.toString();
+            opts.self = "localhost:" + (port + k);
+            servers.add(startServer(opts, issuer));
+        }
+
+        AtomicBoolean stop = new AtomicBoolean();
+        AtomicLong done = new AtomicLong();
+        AtomicLong seq = new AtomicLong();
+        List<AsyncKeyClient> clients = new ArrayList<>();
+        List<Thread> senders = new ArrayList<>();
+        for (int k = 0; k < nodes; k++) {
+            AsyncKeyClient client = new AsyncKeyClient("localhost", port + k, new AsyncKeyClient.Options());
+            clients.add(client);
+            Semaphore window = new Semaphore(inflight);
+            senders.add(Thread.ofVirtual().start(() -> {
+                while (!stop.get()) {
+                    try {
+                        window.acquire();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    client.request("cluster-" + port + "-" + seq.incrementAndGet()).whenComplete((key, ex) -> {
+                        if (ex == null) done.incrementAndGet();
+                        window.release();
+                    });
+                }
+            }));
+        }
+        // первая секунда — прогрев, её не считаем
+        Thread.sleep(1000);
+        long c0 = done.get();
+        long t0 = System.nanoTime();
+        Thread.sleep(seconds * 1000L);
+        long completed = done.get() - c0;
+        double elapsed = (System.nanoTime() - t0) / 1e9;
+        stop.set(true);
+        for (Thread t : senders) t.interrupt();
+        for (AsyncKeyClient c : clients) c.close();
+        for (KeyServer s : servers) s.shutdown();
+        for (KeyServer s : servers) s.awaitStopped(5_000);
+        return completed / elapsed;
+    }
+
+    private static KeyServer startServer(KeyServer.Options opts, KeyPair issuer) throws Exception {
+        KeyServer server = new KeyServer(opts, issuer.getPrivate(), new X500Name("CN=BenchIssuer"));
+        Thread t = new Thread(() -> {
+            try {
+                server.start();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }, "bench-node-" + opts.port);
+        t.setDaemon(true);
+        t.start();
+        // ждём, пока узел начнёт слушать порт
+        for (int i = 0; i < 100; i++) {
+            try {
+                SocketChannel.open(new InetSocketAddress("localhost", opts.port)).close();
+                return server;
+            } catch (IOException e) {
+                Thread.sleep(50);
+            }
+        }
+        throw new IOException("Node on port " + opts.port + " did not start");
+    }
+}
@@ -0,0 +1,148 @@
+package org.example;
+
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.Security;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Сравнение пропускной способности по соединениям (conn/s) для 1 и N реакторов.
+// Сервер поднимается в этом же процессе; все клиенты просят одно и то же, заранее
+// выпущенное имя, так что меряется именно accept/read/write, а не генерация ключей.
+// Заодно печатается, сколько байт на соединение выделяют потоки сервера (приём и реакторы).
+// Это не JMH-бенчмарк, а отдельная программа из jmh-jar: ./gradlew jmhJar, затем
+// java -cp build/libs/Task_1-1.0-SNAPSHOT-jmh.jar org.example.ConnectBenchmark --reactors 8
+class ConnectBenchmark {
+    private static final String NAME = "bench";
+
+    public static void main(String[] args) throws Exception {
+        int reactors = Runtime.getRuntime().availableProcessors();
+        int clients = 256;
+        int seconds = 10;
+        int basePort = 5700;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--reactors": reactors = Integer.parseInt(args[++i]); break;
+                case "--clients": clients = Integer.parseInt(args[++i]); break;
+                case "--seconds": seconds = Integer.parseInt(args[++i]); break;
+                case "--port": basePort = Integer.parseInt(args[++i]); break;
+                default: System.err.println("Unknown arg " + args[i]); System.exit(1);
+            }
+        }
+
+        Security.addProvider(new BouncyCastleProvider());
+        KeyPairGenerator kpg = KeyPairGenerator.getInstance("RSA");
+        kpg.initialize(2048);
+        KeyPair issuer = kpg.generateKeyPair();
+        PrintStream out = System.out;
+        // построчный лог сервера здесь только мешает измерению
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+
+        double[] single = run(basePort, 1, clients, seconds, issuer);
+        out.printf("reactors=%-3d clients=%-5d %10.0f conn/s %8.0f B/conn%n", 1, clients, single[0], single[1]);
+        double[] multi = run(basePort + 1, reactors, clients, seconds, issuer);
+        out.printf("reactors=%-3d clients=%-5d %10.0f conn/s %8.0f B/conn (x%.2f)%n",
+                reactors, clients, multi[0], multi[1], multi[0] / single[0]);
+        System.exit(0);
+    }
+
+    // {соединений в секунду, байт выделено серверными потоками на соединение}
+    private static double[] run(int port, int reactors, int clients, int seconds, KeyPair issuer) throws Exception {
+        startServer(port, reactors, issuer);
+        request(port); // прогрев: запись попадает в реестр имён этого сервера
+
+        AtomicBoolean stop = new AtomicBoolean();
+        AtomicLong done = new AtomicLong();
+        try (ExecutorService exec = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < clients; i++) {
+                exec.submit(() -> {
+                    while (!stop.get()) {
+                        try {
+                            request(port);
+                            done.incrementAndGet();
+                        } catch (IOException ignored) {
+                            // переполнение backlog и т.п. — просто повторяем
+                        }
+                    }
+                });
+            }
+            // первая секунда — прогрев JIT, её не считаем
+            Thread.sleep(1000);
+            long a0 = serverAllocatedBytes(port);
+            long c0 = done.get();
+            long t0 = System.nanoTime();
+            Thread.sleep(seconds * 1000L);
+            long completed = done.get() - c0;
+            long allocated = serverAllocatedBytes(port) - a0;
+            double elapsed = (System.nanoTime() - t0) / 1e9;
+            stop.set(true);
+            return new double[]{completed / elapsed, (double) allocated / Math.max(1, completed)};
+        }
+    }
+
+    private static void startServer(int port, int reactors, KeyPair issuer) throws Exception {
+        KeyServer.Options opts = new KeyServer.Options();
+        opts.port = port;
+        opts.reactors = reactors;
+        opts.keyPoolSize = 0;
+        opts.keyPoolRefillers = 0;
+        // EC-ключ выпускается за миллисекунды, так что прогрев не ждёт генерации RSA
+        opts.keyAlgorithm = KeyAlgorithm.EC_P256;
+        KeyServer server = new KeyServer(opts, issuer.getPrivate(), new X500Name("CN=BenchIssuer"));
+        Thread t = new Thread(() -> {
+            try {
+                server.start();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }, "bench-server-" + port);
+        t.setDaemon(true);
+        t.start();
+        // ждём, пока сервер начнёт слушать порт
+        for (int i = 0; i < 100; i++) {
+            try {
+                SocketChannel.open(new InetSocketAddress("localhost", port)).close();
+                return;
+            } catch (IOException e) {
+                Thread.sleep(50);
+            }
+        }
+        throw new IOException("Server on port " + port + " did not start");
+    }
+
+    // Байты, выделенные в куче потоком приёма этого сервера и всеми реакторами. Реакторы
+    // обоих прогонов живут в одном процессе, но первый сервер к этому моменту уже простаивает.
+    private static long serverAllocatedBytes(int port) {
+        com.sun.management.ThreadMXBean mx = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long sum = 0;
+        for (Thread t : Thread.getAllStackTraces().keySet()) {
+            String n = t.getName();
+            if (n.startsWith("reactor-") || n.equals("bench-server-" + port)) {
+                sum += mx.getThreadAllocatedBytes(t.threadId());
+            }
+        }
+        return sum;
+    }
+
+    // Полный цикл одного клиента: подключиться, отправить имя, дочитать ответ до EOF.
+    private static void request(int port) throws IOException {
+        try (SocketChannel sc = SocketChannel.open(new InetSocketAddress("localhost", port))) {
+            sc.write(ByteBuffer.wrap((NAME + "\0").getBytes(StandardCharsets.US_ASCII)));
+            ByteBuffer buf = ByteBuffer.allocate(16 * 1024);
+            while (sc.read(buf) >= 0) buf.clear();
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package org.example;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.util.concurrent.TimeUnit;
+
+// Генерация пары ключей по алгоритмам. rsa8192 (секунды на операцию) по умолчанию не включён,
+// его задают ключом JMH -p: ./gradlew jmhJar, затем
+// java -jar build/libs/Task_1-1.0-SNAPSHOT-jmh.jar KeyGeneration -p alg=rsa8192
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class KeyGenerationBenchmark {
+    @Param({"rsa2048", "rsa4096", "ec-p256", "ed25519"})
+    public String alg;
+
+    private KeyAlgorithm algorithm;
+
+    @Setup
+    public void setup() {
+        algorithm = KeyAlgorithm.parse(alg);
+    }
+
+    @Benchmark
+    public KeyPair generate() throws GeneralSecurityException {
+        return algorithm.generate();
+    }
+}
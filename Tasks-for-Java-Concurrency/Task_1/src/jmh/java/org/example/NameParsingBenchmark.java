@@ -0,0 +1,61 @@
+package org.example;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+// Разбор нуль-терминированного имени, как в doRead, на синтетическом буфере без сокета.
+// streamCopy — прежний способ (побайтно в ByteArrayOutputStream), bulkScan — нынешний
+// (поиск '\0' по 8 байт и декодирование прямо из direct-буфера). Аллокации: -prof gc.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class NameParsingBenchmark {
+    @Param({"16", "64", "1000"})
+    public int nameLength;
+
+    private ByteBuffer frame;
+    private ByteBuffer direct;
+    private final byte[] scratch = new byte[BatchProtocol.MAX_NAME];
+
+    @Setup
+    public void setup() {
+        byte[] name = "h".repeat(nameLength).getBytes(StandardCharsets.US_ASCII);
+        frame = ByteBuffer.allocate(name.length + 1).put(name).put((byte) 0).flip();
+        direct = ByteBuffer.allocateDirect(name.length + 1).put(name).put((byte) 0).flip();
+    }
+
+    @Benchmark
+    public String streamCopy() {
+        return takeName(frame.duplicate(), new ByteArrayOutputStream());
+    }
+
+    @Benchmark
+    public String bulkScan() {
+        int nul = BatchProtocol.indexOfNul(direct, 0, direct.limit());
+        return BatchProtocol.decodeName(direct, 0, nul, scratch);
+    }
+
+    // прежний NioEngine.takeName
+    private static String takeName(ByteBuffer buf, ByteArrayOutputStream acc) {
+        while (buf.hasRemaining()) {
+            byte b = buf.get();
+            if (b == 0) {
+                return new String(acc.toByteArray(), StandardCharsets.US_ASCII);
+            }
+            acc.write(b);
+            if (acc.size() > BatchProtocol.MAX_NAME) return null;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,51 @@
+package org.example;
+
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.nio.ByteBuffer;
+import java.security.KeyPair;
+import java.security.Security;
+import java.security.cert.X509Certificate;
+import java.util.concurrent.TimeUnit;
+
+// getEncoded + оформление ответа (один раз на выпуск) против выдачи уже готового ответа (каждый запрос).
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ResponseFramingBenchmark {
+    @Param({"rsa4096", "ec-p256"})
+    public String alg;
+
+    private KeyPair pair;
+    private X509Certificate cert;
+    private KeyRecord record;
+
+    @Setup
+    public void setup() throws Exception {
+        Security.addProvider(new BouncyCastleProvider());
+        KeyPair issuerPair = KeyAlgorithm.EC_P256.generate();
+        CertIssuer issuer = new CertIssuer(issuerPair.getPrivate(), new X500Name("CN=BenchIssuer"));
+        pair = KeyAlgorithm.parse(alg).generate();
+        cert = issuer.issue("bench-host", pair.getPublic());
+        record = new KeyRecord(pair.getPrivate(), cert);
+    }
+
+    @Benchmark
+    public KeyRecord encodeAndFrame() throws Exception {
+        return new KeyRecord(pair.getPrivate(), cert);
+    }
+
+    @Benchmark
+    public ByteBuffer cachedResponse() {
+        return record.response();
+    }
+}
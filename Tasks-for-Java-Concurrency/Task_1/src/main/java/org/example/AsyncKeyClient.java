@@ -0,0 +1,336 @@
+package org.example;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousSocketChannel;
+import java.nio.channels.CompletionHandler;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Асинхронный клиент KeyServer для встраивания: request(name) сразу возвращает future.
+//
+// Запросы идут по пакетному протоколу через несколько постоянных соединений
+// (AsynchronousSocketChannel), ответы приходят в любом порядке и сопоставляются по id.
+// На соединение одновременно отправлено не больше window запросов — столько же сервер
+// по умолчанию держит неотвеченными; остальные ждут своей очереди у клиента, и таймаут
+// для них ещё не идёт.
+//
+// Отказ "занято", ошибка сервера, обрыв соединения и таймаут повторяются с
+// экспоненциальной задержкой (со случайным разбросом), но не раньше, чем просил сервер.
+class AsyncKeyClient implements AutoCloseable {
+    static class Options {
+        int connections = 2;
+        int window = 256;          // отправленных без ответа запросов на соединение
+        long connectTimeoutMs = 5_000;
+        long timeoutMs = 120_000;  // от отправки запроса до ответа
+        int retries = 5;
+        long backoffMs = 200;      // первая задержка повтора, дальше удваивается
+        long maxBackoffMs = 30_000;
+        boolean peer;              // соединения узла кластера (PEER_MAGIC): владелец не пересылает дальше
+    }
+
+    private final InetSocketAddress address;
+    private final Options opts;
+    private final Connection[] slots;
+    private final AtomicInteger next = new AtomicInteger();
+    private final AtomicBoolean closed = new AtomicBoolean();
+    private final AtomicLong retried = new AtomicLong();
+
+    AsyncKeyClient(String host, int port, Options opts) {
+        this.address = new InetSocketAddress(host, port);
+        this.opts = opts;
+        this.slots = new Connection[Math.max(1, opts.connections)];
+    }
+
+    CompletableFuture<IssuedKey> request(String name) {
+        CompletableFuture<IssuedKey> result = new CompletableFuture<>();
+        if (name.length() > BatchProtocol.maxName(opts.peer)) {
+            result.completeExceptionally(new IllegalArgumentException("Name too long: " + name.length()));
+            return result;
+        }
+        attempt(name, 0, result);
+        return result;
+    }
+
+    // сколько раз запросы повторялись
+    long retried() {
+        return retried.get();
+    }
+
+    private void attempt(String name, int n, CompletableFuture<IssuedKey> result) {
+        connection().thenCompose(c -> c.send(name)).whenComplete((key, ex) -> {
+            if (ex == null) {
+                result.complete(key);
+                return;
+            }
+            Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+            if (n >= opts.retries || closed.get()) {
+                result.completeExceptionally(cause);
+                return;
+            }
+            long delay = backoff(n);
+            if (cause instanceof ServerBusyException busy) delay = Math.max(delay, busy.retryAfterMs);
+            retried.incrementAndGet();
+            Log.debug("Retrying '{}' in {} ms after {}", name, delay, cause);
+            CompletableFuture.delayedExecutor(delay, TimeUnit.MILLISECONDS).execute(() -> attempt(name, n + 1, result));
+        });
+    }
+
+    // от половины до полного base * 2^n: случайный разброс, чтобы повторы тысяч запросов не шли волной
+    private long backoff(int n) {
+        long ceiling = Math.min(opts.maxBackoffMs, opts.backoffMs << Math.min(n, 20));
+        return ThreadLocalRandom.current().nextLong(ceiling / 2, ceiling + 1);
+    }
+
+    // Соединения выдаются по кругу; разорванное заменяется новым при следующем обращении.
+    private CompletableFuture<Connection> connection() {
+        if (closed.get()) return CompletableFuture.failedFuture(new IOException("Client closed"));
+        int i = Math.floorMod(next.getAndIncrement(), slots.length);
+        synchronized (slots) {
+            Connection c = slots[i];
+            if (c == null || c.failed) {
+                c = new Connection();
+                slots[i] = c;
+                c.connect();
+            }
+            return c.ready;
+        }
+    }
+
+    @Override
+    public void close() {
+        if (!closed.compareAndSet(false, true)) return;
+        synchronized (slots) {
+            for (Connection c : slots) {
+                if (c != null) c.fail(new IOException("Client closed"));
+            }
+        }
+    }
+
+    // Одно соединение пакетного протокола.
+    private final class Connection {
+        final CompletableFuture<Connection> ready = new CompletableFuture<>();
+        private AsynchronousSocketChannel ch;
+        private volatile boolean failed;
+
+        private final AtomicInteger ids = new AtomicInteger();
+        private final Map<Integer, Request> inflight = new ConcurrentHashMap<>();
+        // ждут места в окне; под замком вместе с счётчиком отправленных
+        private final Queue<Request> backlog = new ArrayDeque<>();
+        private int sent;
+
+        // кадры на отправку; пишет одновременно только одна операция записи канала
+        private final Queue<ByteBuffer> writes = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean writing = new AtomicBoolean();
+
+        private ByteBuffer in = ByteBuffer.allocate(64 * 1024);
+
+        private final class Request {
+            final int id = ids.getAndIncrement();
+            final String name;
+            final CompletableFuture<IssuedKey> future = new CompletableFuture<>();
+
+            Request(String name) {
+                this.name = name;
+            }
+        }
+
+        void connect() {
+            try {
+                ch = AsynchronousSocketChannel.open();
+            } catch (IOException e) {
+                fail(e);
+                return;
+            }
+            ready.orTimeout(opts.connectTimeoutMs, TimeUnit.MILLISECONDS)
+                    .whenComplete((c, ex) -> { if (ex != null) fail(ex); });
+            ch.connect(address, null, new CompletionHandler<Void, Void>() {
+                @Override
+                public void completed(Void v, Void a) {
+                    writes.add(ByteBuffer.wrap(opts.peer ? BatchProtocol.PEER_MAGIC : BatchProtocol.MAGIC));
+                    flush();
+                    read();
+                    ready.complete(Connection.this);
+                }
+
+                @Override
+                public void failed(Throwable exc, Void a) {
+                    fail(exc);
+                }
+            });
+        }
+
+        CompletableFuture<IssuedKey> send(String name) {
+            Request r = new Request(name);
+            boolean now;
+            synchronized (backlog) {
+                now = sent < opts.window;
+                if (now) {
+                    sent++;
+                } else {
+                    backlog.add(r);
+                }
+            }
+            if (now) transmit(r);
+            if (failed) fail(new IOException("Connection closed"));
+            return r.future;
+        }
+
+        private void transmit(Request r) {
+            inflight.put(r.id, r);
+            // таймаут считается от отправки; поздний ответ на снятый запрос просто отбрасывается
+            r.future.orTimeout(opts.timeoutMs, TimeUnit.MILLISECONDS)
+                    .whenComplete((k, ex) -> { if (inflight.remove(r.id) != null) done(); });
+            writes.add(BatchProtocol.request(r.id, r.name));
+            flush();
+        }
+
+        // ответ получен или запрос снят: место в окне переходит следующему из очереди
+        private void done() {
+            Request r;
+            synchronized (backlog) {
+                r = backlog.poll();
+                if (r == null) sent--;
+            }
+            if (r != null) transmit(r);
+        }
+
+        // Накопившиеся кадры уходят одной gathering-записью.
+        private void flush() {
+            if (failed || !writing.compareAndSet(false, true)) return;
+            List<ByteBuffer> batch = new ArrayList<>();
+            ByteBuffer b;
+            while (batch.size() < 64 && (b = writes.poll()) != null) batch.add(b);
+            if (batch.isEmpty()) {
+                writing.set(false);
+                if (!writes.isEmpty()) flush(); // кадр добавили между poll и set
+                return;
+            }
+            write(batch.toArray(new ByteBuffer[0]));
+        }
+
+        private void write(ByteBuffer[] frames) {
+            ch.write(frames, 0, frames.length, opts.timeoutMs, TimeUnit.MILLISECONDS, null,
+                    new CompletionHandler<Long, Void>() {
+                        @Override
+                        public void completed(Long n, Void a) {
+                            if (frames[frames.length - 1].hasRemaining()) {
+                                write(frames);
+                                return;
+                            }
+                            writing.set(false);
+                            flush();
+                        }
+
+                        @Override
+                        public void failed(Throwable exc, Void a) {
+                            fail(exc);
+                        }
+                    });
+        }
+
+        private void read() {
+            ch.read(in, null, new CompletionHandler<Integer, Void>() {
+                @Override
+                public void completed(Integer n, Void a) {
+                    if (n < 0) {
+                        fail(new EOFException("Server closed the connection"));
+                        return;
+                    }
+                    in.flip();
+                    try {
+                        parseFrames();
+                    } catch (IOException e) {
+                        fail(e);
+                        return;
+                    }
+                    in.compact();
+                    ch.read(in, null, this);
+                }
+
+                @Override
+                public void failed(Throwable exc, Void a) {
+                    fail(exc);
+                }
+            });
+        }
+
+        // [int id][byte статус][int длина][тело] — разбираем все целые кадры из буфера
+        private void parseFrames() throws IOException {
+            while (in.remaining() >= BatchProtocol.RESPONSE_HEADER) {
+                int at = in.position();
+                int id = in.getInt(at);
+                byte status = in.get(at + 4);
+                int len = in.getInt(at + 5);
+                if (len < 0) throw new IOException("Bad response frame length " + len);
+                int frame = BatchProtocol.RESPONSE_HEADER + len;
+                if (in.remaining() < frame) {
+                    if (frame > in.capacity()) grow(frame);
+                    return;
+                }
+                byte[] body = new byte[len];
+                in.position(at + BatchProtocol.RESPONSE_HEADER).get(body);
+                Request r = inflight.get(id);
+                if (r != null) complete(r, status, ByteBuffer.wrap(body));
+            }
+        }
+
+        // кадр не помещается в буфер чтения — переносим прочитанное в буфер побольше
+        private void grow(int frame) {
+            ByteBuffer bigger = ByteBuffer.allocate(Math.max(frame, in.capacity() * 2));
+            bigger.put(in);
+            bigger.flip();
+            in = bigger;
+        }
+
+        private void complete(Request r, byte status, ByteBuffer body) {
+            try {
+                switch (status) {
+                    case BatchProtocol.STATUS_OK:
+                        r.future.complete(IssuedKey.parse(r.name, body));
+                        break;
+                    case BatchProtocol.STATUS_BUSY:
+                        r.future.completeExceptionally(new ServerBusyException(body.getInt()));
+                        break;
+                    default:
+                        r.future.completeExceptionally(new IOException(
+                                "Server failed '" + r.name + "': " + StandardCharsets.UTF_8.decode(body)));
+                }
+            } catch (IOException e) {
+                r.future.completeExceptionally(e);
+            }
+        }
+
+        // Соединение больше не годится: все его запросы завершаются ошибкой (и повторяются
+        // уже через новое соединение), канал закрывается.
+        void fail(Throwable cause) {
+            failed = true;
+            ready.completeExceptionally(cause);
+            List<Request> dropped = new ArrayList<>(inflight.values());
+            synchronized (backlog) {
+                dropped.addAll(backlog);
+                backlog.clear();
+            }
+            for (Request r : dropped) r.future.completeExceptionally(cause);
+            try {
+                if (ch != null) ch.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package org.example;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletionException;
+
+// Пакетное расширение протокола: много имён за одно соединение.
+//
+// Клиент начинает соединение с MAGIC. Обычное имя — ASCII, поэтому байт 0xCA в начале
+// однозначно отличает пакетный режим от старого "имя\0".
+//
+// Запрос:  [int id][int длина имени][имя ASCII]          — сколько угодно, затем shutdownOutput
+// Ответ:   [int id][byte статус][int длина тела][тело]   — по мере готовности, в любом порядке
+//   STATUS_OK:    тело — тот же ответ, что и в старом протоколе (длина+ключ, длина+сертификат)
+//   STATUS_ERROR: тело — текст ошибки UTF-8
+//   STATUS_BUSY:  тело — [int через сколько мс повторить]; имя не принято из-за перегрузки
+//
+// Узлы кластера пересылают запросы владельцу имени тем же протоколом, но начинают
+// соединение с PEER_MAGIC: такие имена сервер обслуживает сам и дальше не пересылает,
+// даже если его список узлов расходится со списком отправителя. Имя в таком кадре
+// предваряет адрес исходного клиента: "адрес\0имя" ('\0' в имени не бывает — это
+// терминатор старого протокола). Квоту и справедливую очередь владелец считает по этому
+// адресу, а не по адресу пересылающего узла — иначе весь узел был бы для него одним клиентом;
+// кадр без адреса считается по самому узлу. PEER_MAGIC с адреса не из --peers закрывает
+// соединение: иначе любой клиент выбирал бы себе квоту сам.
+//
+// В старом протоколе перегрузка передаётся как [int LEGACY_BUSY][int мс]: длина ключа
+// не бывает отрицательной, так что клиент отличает этот ответ по первому полю.
+final class BatchProtocol {
+    static final byte[] MAGIC = {(byte) 0xCA, 'K', 'S', 'B'};
+    static final byte[] PEER_MAGIC = {(byte) 0xCA, 'K', 'S', 'P'};
+    static final int MAX_NAME = 4096;
+    // кадр узла кластера: имя и адрес клиента перед ним
+    static final int MAX_PEER_NAME = MAX_NAME + 64;
+    static final int REQUEST_HEADER = 8;
+    static final int RESPONSE_HEADER = 9;
+
+    static final byte STATUS_OK = 0;
+    static final byte STATUS_ERROR = 1;
+    static final byte STATUS_BUSY = 2;
+    static final int LEGACY_BUSY = -1;
+
+    private BatchProtocol() {}
+
+    static boolean startsBatch(byte first) {
+        return first == MAGIC[0];
+    }
+
+    static boolean isMagic(ByteBuffer buf, int from) {
+        return matches(buf, from, MAGIC);
+    }
+
+    static boolean isPeerMagic(ByteBuffer buf, int from) {
+        return matches(buf, from, PEER_MAGIC);
+    }
+
+    private static boolean matches(ByteBuffer buf, int from, byte[] magic) {
+        for (int i = 0; i < magic.length; i++) {
+            if (buf.get(from + i) != magic[i]) return false;
+        }
+        return true;
+    }
+
+    static int maxName(boolean peer) {
+        return peer ? MAX_PEER_NAME : MAX_NAME;
+    }
+
+    // Имя для кадра узла кластера; source — адрес клиента (KeyServer.sourceOf), null — неизвестен.
+    static String peerName(String source, String name) {
+        return source == null ? name : source + '\0' + name;
+    }
+
+    static ByteBuffer request(int id, String name) {
+        byte[] bytes = name.getBytes(StandardCharsets.US_ASCII);
+        ByteBuffer buf = ByteBuffer.allocate(REQUEST_HEADER + bytes.length);
+        return buf.putInt(id).putInt(bytes.length).put(bytes).flip();
+    }
+
+    // Заголовок и тело отдельными буферами — для gathering write без копирования тела.
+    static ByteBuffer[] ok(int id, KeyRecord kr) {
+        return ok(id, kr, ByteBuffer.allocate(RESPONSE_HEADER));
+    }
+
+    static ByteBuffer[] error(int id, String message) {
+        return error(id, message, ByteBuffer.allocate(RESPONSE_HEADER));
+    }
+
+    static ByteBuffer[] busy(int id, long retryAfterMs) {
+        return busy(id, retryAfterMs, ByteBuffer.allocate(RESPONSE_HEADER));
+    }
+
+    // Кадр ответа по исходу future: ключ, отказ из-за перегрузки или ошибка.
+    static ByteBuffer[] response(int id, KeyRecord kr, Throwable ex) {
+        return response(id, kr, ex, ByteBuffer.allocate(RESPONSE_HEADER));
+    }
+
+    // То же, но заголовок пишется в переданный буфер (из пула реактора) — не меньше RESPONSE_HEADER.
+    static ByteBuffer[] response(int id, KeyRecord kr, Throwable ex, ByteBuffer header) {
+        Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+        if (cause == null) return ok(id, kr, header);
+        if (cause instanceof ServerBusyException busy) return busy(id, busy.retryAfterMs, header);
+        return error(id, String.valueOf(cause), header);
+    }
+
+    private static ByteBuffer[] ok(int id, KeyRecord kr, ByteBuffer header) {
+        ByteBuffer body = kr.response();
+        return new ByteBuffer[]{header(header, id, STATUS_OK, body.remaining()), body};
+    }
+
+    private static ByteBuffer[] error(int id, String message, ByteBuffer header) {
+        ByteBuffer body = ByteBuffer.wrap(String.valueOf(message).getBytes(StandardCharsets.UTF_8));
+        return new ByteBuffer[]{header(header, id, STATUS_ERROR, body.remaining()), body};
+    }
+
+    private static ByteBuffer[] busy(int id, long retryAfterMs, ByteBuffer header) {
+        ByteBuffer body = ByteBuffer.allocate(4).putInt(clampMs(retryAfterMs)).flip();
+        return new ByteBuffer[]{header(header, id, STATUS_BUSY, body.remaining()), body};
+    }
+
+    // Индекс первого '\0' в buf[from, to) или -1. Просматриваем по 8 байт за шаг (SWAR): в слове
+    // есть нулевой байт, если (v - 0x01..01) & ~v & 0x80..80 != 0. Слово берём в порядке
+    // little-endian — тогда младший отмеченный байт и есть первый ноль (ложные отметки бывают
+    // только выше настоящего нуля).
+    static int indexOfNul(ByteBuffer buf, int from, int to) {
+        int i = from;
+        for (; i + Long.BYTES <= to; i += Long.BYTES) {
+            long v = buf.getLong(i);
+            if (buf.order() == ByteOrder.BIG_ENDIAN) v = Long.reverseBytes(v);
+            long z = (v - 0x0101010101010101L) & ~v & 0x8080808080808080L;
+            if (z != 0) return i + (Long.numberOfTrailingZeros(z) >>> 3);
+        }
+        for (; i < to; i++) {
+            if (buf.get(i) == 0) return i;
+        }
+        return -1;
+    }
+
+    // ASCII-имя из buf[from, from + len) через переиспользуемый массив: на имя остаётся
+    // одна аллокация — сама строка.
+    static String decodeName(ByteBuffer buf, int from, int len, byte[] scratch) {
+        buf.get(from, scratch, 0, len);
+        return new String(scratch, 0, len, StandardCharsets.US_ASCII);
+    }
+
+    static ByteBuffer legacyBusy(long retryAfterMs) {
+        return ByteBuffer.allocate(8).putInt(LEGACY_BUSY).putInt(clampMs(retryAfterMs)).flip();
+    }
+
+    private static int clampMs(long ms) {
+        return (int) Math.min(Integer.MAX_VALUE, Math.max(0, ms));
+    }
+
+    private static ByteBuffer header(ByteBuffer header, int id, byte status, int length) {
+        return header.clear().putInt(id).put(status).putInt(length).flip();
+    }
+}
@@ -0,0 +1,47 @@
+package org.example;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+
+// Пул direct-буферов одного размера. Не потокобезопасен: у каждого реактора свои пулы,
+// буферы берутся и возвращаются только в его потоке, поэтому замки не нужны.
+//
+// Direct-буфер читается из сокета без промежуточной копии в куче, а повторное
+// использование убирает из короткоживущих соединений и выделение, и работу для GC.
+final class BufferPool {
+    private final int size;
+    private final int maxFree;
+    private final ArrayDeque<ByteBuffer> free = new ArrayDeque<>();
+    private volatile long allocated; // пишет только поток реактора, читает опрос метрик
+
+    // size — размер буфера, maxFree — сколько свободных держать; лишние отдаются GC
+    BufferPool(int size, int maxFree) {
+        this.size = size;
+        this.maxFree = maxFree;
+    }
+
+    int bufferSize() {
+        return size;
+    }
+
+    ByteBuffer take() {
+        ByteBuffer b = free.pollLast(); // последний возвращённый — скорее всего ещё в кэше
+        if (b == null) {
+            b = ByteBuffer.allocateDirect(size);
+            allocated++;
+        }
+        return b.clear();
+    }
+
+    // Чужие буферы (другого размера, только для чтения, из кучи) молча игнорируются, так что
+    // вернуть можно всё, что было в очереди записи соединения.
+    void give(ByteBuffer b) {
+        if (b == null || b.capacity() != size || !b.isDirect() || b.isReadOnly()) return;
+        if (free.size() < maxFree) free.addLast(b);
+    }
+
+    // байт direct-памяти, выделенной пулом за всё время
+    long allocatedBytes() {
+        return allocated * size;
+    }
+}
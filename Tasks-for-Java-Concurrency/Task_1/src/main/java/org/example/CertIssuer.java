@@ -0,0 +1,147 @@
+package org.example;
+
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.cert.X509v3CertificateBuilder;
+import org.bouncycastle.cert.jcajce.JcaX509CertificateConverter;
+import org.bouncycastle.cert.jcajce.JcaX509v3CertificateBuilder;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.bouncycastle.operator.ContentSigner;
+import org.bouncycastle.operator.OperatorCreationException;
+import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
+
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.SecureRandom;
+import java.security.Security;
+import java.security.Signature;
+import java.security.cert.CertificateException;
+import java.security.cert.X509Certificate;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+// Издатель: строит сертификат на открытый ключ и подписывает его своим ключом.
+//
+// Подписант, конвертер и SecureRandom у каждого потока свои (ThreadLocal): создавать их на
+// каждый сертификат дорого, а общий экземпляр пришлось бы делить под замком. Подписант BC
+// после getSignature() готов к следующей подписи, так что внутри потока он переиспользуется.
+class CertIssuer {
+    static {
+        // провайдер регистрируем один раз: Security.addProvider синхронизирован глобально
+        if (Security.getProvider(BouncyCastleProvider.PROVIDER_NAME) == null) {
+            Security.addProvider(new BouncyCastleProvider());
+        }
+    }
+
+    final PrivateKey key;
+    final X500Name name;
+    final String signatureAlgorithm;
+    // открытый ключ из сертификата издателя; null, если сертификат не загружен
+    final PublicKey publicKey;
+
+    private final ThreadLocal<Context> context = ThreadLocal.withInitial(this::newContext);
+
+    // Всё, что нужно потоку для выпуска сертификатов; используется только этим потоком.
+    private static final class Context {
+        final ContentSigner signer;
+        final JcaX509CertificateConverter converter;
+        final SecureRandom random;
+
+        Context(ContentSigner signer, JcaX509CertificateConverter converter, SecureRandom random) {
+            this.signer = signer;
+            this.converter = converter;
+            this.random = random;
+        }
+    }
+
+    CertIssuer(PrivateKey key, X500Name name) {
+        this(key, name, null);
+    }
+
+    CertIssuer(PrivateKey key, X500Name name, PublicKey publicKey) {
+        this.key = key;
+        this.name = name;
+        this.signatureAlgorithm = KeyAlgorithm.signatureAlgorithmFor(key);
+        this.publicKey = publicKey;
+    }
+
+    // Закрытый ключ и сертификат издателя из одной пары? При ротации файлы могут
+    // оказаться от разных поколений — такой издатель подписывал бы непроверяемые сертификаты.
+    void checkKeyPair() throws GeneralSecurityException {
+        if (publicKey == null) return;
+        byte[] probe = "issuer key check".getBytes(StandardCharsets.US_ASCII);
+        Signature s = Signature.getInstance(signatureAlgorithm);
+        s.initSign(key);
+        s.update(probe);
+        byte[] signature = s.sign();
+        s.initVerify(publicKey);
+        s.update(probe);
+        if (!s.verify(signature)) throw new GeneralSecurityException("Issuer key does not match issuer certificate");
+    }
+
+    // Выпущен ли сертификат этим издателем. Без открытого ключа сверяем только имя.
+    boolean issued(X509Certificate cert) {
+        if (!X500Name.getInstance(cert.getIssuerX500Principal().getEncoded()).equals(name)) return false;
+        if (publicKey == null) return true;
+        try {
+            cert.verify(publicKey);
+            return true;
+        } catch (GeneralSecurityException e) {
+            return false;
+        }
+    }
+
+    private Context newContext() {
+        try {
+            ContentSigner signer = new JcaContentSignerBuilder(signatureAlgorithm).build(key);
+            return new Context(signer, new JcaX509CertificateConverter().setProvider("BC"), new SecureRandom());
+        } catch (OperatorCreationException e) {
+            throw new IllegalStateException("Cannot create signer for " + signatureAlgorithm, e);
+        }
+    }
+
+    X509Certificate issue(String subjectCn, PublicKey subjectKey) throws CertificateException {
+        Context ctx = context.get();
+        ZonedDateTime now = ZonedDateTime.now();
+        return sign(ctx, builder(ctx, subjectCn, subjectKey, now));
+    }
+
+    // Пакетный выпуск: один контекст и одно "сейчас" на все сертификаты, построители
+    // готовятся заранее, затем подписываются подряд одним подписантом.
+    List<X509Certificate> issueAll(List<String> subjectCns, List<PublicKey> subjectKeys) throws CertificateException {
+        Context ctx = context.get();
+        ZonedDateTime now = ZonedDateTime.now();
+        List<X509v3CertificateBuilder> builders = new ArrayList<>(subjectCns.size());
+        for (int i = 0; i < subjectCns.size(); i++) {
+            builders.add(builder(ctx, subjectCns.get(i), subjectKeys.get(i), now));
+        }
+        List<X509Certificate> certs = new ArrayList<>(builders.size());
+        for (X509v3CertificateBuilder b : builders) certs.add(sign(ctx, b));
+        return certs;
+    }
+
+    private X509v3CertificateBuilder builder(Context ctx, String subjectCn, PublicKey subjectKey, ZonedDateTime now) {
+        X500Name subject = new X500Name("CN=" + subjectCn);
+        BigInteger serial = new BigInteger(160, ctx.random);
+        Date notBefore = Date.from(now.minus(1, ChronoUnit.MINUTES).toInstant());
+        Date notAfter = Date.from(now.plus(365, ChronoUnit.DAYS).toInstant());
+
+        return new JcaX509v3CertificateBuilder(
+                name,
+                serial,
+                notBefore,
+                notAfter,
+                subject,
+                subjectKey
+        );
+    }
+
+    private static X509Certificate sign(Context ctx, X509v3CertificateBuilder builder) throws CertificateException {
+        return ctx.converter.getCertificate(builder.build(ctx.signer));
+    }
+}
@@ -0,0 +1,52 @@
+package org.example;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Ограничение частоты генераций на клиента: ведро токенов на адрес источника.
+// Ведро наполняется со скоростью rate в секунду до burst; каждая генерация берёт токен.
+// Попадания в кэш квоту не тратят — ограничивается только дорогая работа.
+class ClientQuota {
+    // столько вёдер держим, прежде чем выбросить полные (давно молчащие клиенты)
+    private static final int MAX_BUCKETS = 10_000;
+
+    private final double ratePerNano;
+    private final double burst;
+    private final Map<Object, Bucket> buckets = new ConcurrentHashMap<>();
+
+    private final class Bucket {
+        private double tokens = burst;
+        private long refilled = System.nanoTime();
+
+        // 0 — токен взят; иначе через сколько миллисекунд появится следующий
+        synchronized long take() {
+            long now = System.nanoTime();
+            refill(now);
+            if (tokens >= 1) {
+                tokens -= 1;
+                return 0;
+            }
+            return Math.max(1, (long) Math.ceil((1 - tokens) / ratePerNano / 1_000_000));
+        }
+
+        synchronized boolean full() {
+            refill(System.nanoTime());
+            return tokens >= burst;
+        }
+
+        private void refill(long now) {
+            tokens = Math.min(burst, tokens + (now - refilled) * ratePerNano);
+            refilled = now;
+        }
+    }
+
+    ClientQuota(double perSecond, int burst) {
+        this.ratePerNano = perSecond / 1e9;
+        this.burst = Math.max(1, burst);
+    }
+
+    long take(Object source) {
+        if (buckets.size() > MAX_BUCKETS) buckets.values().removeIf(Bucket::full);
+        return buckets.computeIfAbsent(source, s -> new Bucket()).take();
+    }
+}
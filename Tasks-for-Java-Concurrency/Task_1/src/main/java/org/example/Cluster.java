@@ -0,0 +1,150 @@
+package org.example;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Статический кластер из нескольких KeyServer: у каждого имени один узел-владелец, только он
+// генерирует ключ. Остальные узлы пересылают имя владельцу по пакетному протоколу (с
+// PEER_MAGIC) и отдают клиенту его ответ, так что одно имя не генерируется дважды.
+//
+// Владелец — по консистентному хешу: каждый узел занимает VNODES точек на кольце, имя
+// принадлежит ближайшей точке по часовой стрелке. Все узлы должны запускаться с одним и
+// тем же списком --peers; при изменении списка переезжает только ~1/N имён.
+//
+// PEER_MAGIC принимается только с адресов из --peers: пересланное имя обслуживается без
+// пересылки, а квоту и очередь выбирает сам узел-отправитель, и стороннему клиенту это давать
+// нельзя. Адреса разрешаются один раз при запуске; смена DNS требует перезапуска.
+class Cluster implements AutoCloseable {
+    private static final int VNODES = 160;
+
+    private final List<InetSocketAddress> peers = new ArrayList<>();
+    private final int self;
+    private final TreeMap<Long, Integer> ring = new TreeMap<>();
+    private final Set<InetAddress> peerAddresses = new HashSet<>();
+    // клиенты к остальным узлам; для себя — null
+    private final AsyncKeyClient[] clients;
+    private final AtomicLong forwarded = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+
+    // peers — "host:port,host:port,...", self — один из них
+    Cluster(String peerList, String selfId) {
+        int me = -1;
+        for (String p : peerList.split(",")) {
+            String id = p.trim();
+            if (id.isEmpty()) continue;
+            if (id.equals(selfId)) me = peers.size();
+            peers.add(parse(id));
+        }
+        if (me < 0) throw new IllegalArgumentException("--self " + selfId + " is not in --peers " + peerList);
+        this.self = me;
+        for (InetSocketAddress p : peers) {
+            try {
+                peerAddresses.addAll(List.of(InetAddress.getAllByName(p.getHostString())));
+            } catch (UnknownHostException e) {
+                throw new IllegalArgumentException("Cannot resolve peer " + p.getHostString(), e);
+            }
+        }
+        for (int i = 0; i < peers.size(); i++) {
+            String id = peers.get(i).getHostString() + ":" + peers.get(i).getPort();
+            for (int v = 0; v < VNODES; v++) ring.put(hash(id + "/" + v), i);
+        }
+        this.clients = new AsyncKeyClient[peers.size()];
+        AsyncKeyClient.Options opts = new AsyncKeyClient.Options();
+        opts.peer = true;
+        // отказ владельца "занято" уходит клиенту как есть: повторяет он, а не промежуточный узел
+        opts.retries = 0;
+        for (int i = 0; i < peers.size(); i++) {
+            if (i != self) clients[i] = new AsyncKeyClient(peers.get(i).getHostString(), peers.get(i).getPort(), opts);
+        }
+    }
+
+    private static InetSocketAddress parse(String id) {
+        int colon = id.lastIndexOf(':');
+        if (colon < 0) throw new IllegalArgumentException("Peer must be host:port, got " + id);
+        return InetSocketAddress.createUnresolved(id.substring(0, colon), Integer.parseInt(id.substring(colon + 1)));
+    }
+
+    // номер этого узла в списке
+    int self() {
+        return self;
+    }
+
+    int size() {
+        return peers.size();
+    }
+
+    int ownerOf(String name) {
+        Map.Entry<Long, Integer> e = ring.ceilingEntry(hash(name));
+        return (e != null ? e : ring.firstEntry()).getValue();
+    }
+
+    boolean ownedHere(String name) {
+        return ownerOf(name) == self;
+    }
+
+    InetSocketAddress peer(int i) {
+        return peers.get(i);
+    }
+
+    // соединение с этого адреса может быть узлом кластера (см. PEER_MAGIC)
+    boolean isPeerAddress(InetAddress a) {
+        return peerAddresses.contains(a);
+    }
+
+    // Ответ владельца на имя, уже в виде готового ответа сервера. source — адрес клиента,
+    // по нему владелец считает квоту и очередь (см. BatchProtocol.peerName).
+    CompletableFuture<KeyRecord> forward(String name, String source) {
+        int owner = ownerOf(name);
+        forwarded.incrementAndGet();
+        return clients[owner].request(BatchProtocol.peerName(source, name)).thenApply(issued -> {
+            try {
+                return KeyRecord.fromResponse(issued.response());
+            } catch (Exception e) {
+                throw new IllegalStateException("Bad response from " + peers.get(owner) + " for '" + name + "'", e);
+            }
+        }).whenComplete((kr, ex) -> {
+            if (ex != null) failures.incrementAndGet();
+        });
+    }
+
+    long forwarded() {
+        return forwarded.get();
+    }
+
+    long failures() {
+        return failures.get();
+    }
+
+    // FNV-1a с перемешиванием из MurmurHash3: дёшево и одинаково во всех JVM, в отличие от
+    // identity-хешей; String.hashCode для кольца распределяет слишком неравномерно.
+    static long hash(String s) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : s.getBytes(StandardCharsets.UTF_8)) {
+            h ^= b & 0xff;
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    @Override
+    public void close() {
+        for (AsyncKeyClient c : clients) {
+            if (c != null) c.close();
+        }
+    }
+}
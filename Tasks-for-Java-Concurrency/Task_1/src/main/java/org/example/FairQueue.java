@@ -0,0 +1,301 @@
+package org.example;
+
+import java.util.AbstractQueue;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Ограниченная очередь задач для ThreadPoolExecutor со справедливой выборкой.
+//
+// Задачи делятся на классы приоритета (0 — самый высокий) и внутри класса — на потоки по
+// источнику (адресу клиента). Классы обслуживаются строго по приоритету, источники внутри
+// класса — по кругу (deficit round-robin с единичной стоимостью задачи): клиент с тысячей
+// имён в очереди получает генератор не чаще, чем клиент с одним.
+class FairQueue extends AbstractQueue<Runnable> implements BlockingQueue<Runnable> {
+    // Задача, которая знает свой источник и класс; остальные идут в общий поток класса 0.
+    interface Item {
+        Object source();
+        int priority();
+    }
+
+    private static final Object ANONYMOUS = new Object();
+
+    private final int capacity;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final PriorityClass[] classes;
+    private int count;
+
+    // Очереди источников одного класса и круг тех, у кого есть задачи.
+    private static final class PriorityClass {
+        final Map<Object, ArrayDeque<Runnable>> flows = new HashMap<>();
+        final ArrayDeque<Object> ring = new ArrayDeque<>();
+    }
+
+    FairQueue(int capacity, int priorities) {
+        this.capacity = capacity;
+        this.classes = new PriorityClass[Math.max(1, priorities)];
+        for (int i = 0; i < classes.length; i++) classes[i] = new PriorityClass();
+    }
+
+    private static Object sourceOf(Runnable r) {
+        Object s = r instanceof Item item ? item.source() : null;
+        return s == null ? ANONYMOUS : s;
+    }
+
+    private PriorityClass classOf(Runnable r) {
+        int p = r instanceof Item item ? item.priority() : 0;
+        return classes[Math.max(0, Math.min(classes.length - 1, p))];
+    }
+
+    @Override
+    public boolean offer(Runnable r) {
+        if (r == null) throw new NullPointerException();
+        lock.lock();
+        try {
+            if (count >= capacity) return false;
+            PriorityClass c = classOf(r);
+            Object source = sourceOf(r);
+            ArrayDeque<Runnable> flow = c.flows.get(source);
+            if (flow == null) {
+                flow = new ArrayDeque<>();
+                c.flows.put(source, flow);
+                c.ring.addLast(source);
+            }
+            flow.addLast(r);
+            count++;
+            notEmpty.signal();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Следующая задача: первый непустой класс, в нём — источник, чья очередь подошла.
+    private Runnable dequeue() {
+        for (PriorityClass c : classes) {
+            Object source = c.ring.pollFirst();
+            if (source == null) continue;
+            ArrayDeque<Runnable> flow = c.flows.get(source);
+            Runnable r = flow.pollFirst();
+            if (flow.isEmpty()) {
+                c.flows.remove(source);
+            } else {
+                c.ring.addLast(source);
+            }
+            count--;
+            return r;
+        }
+        return null;
+    }
+
+    @Override
+    public Runnable poll() {
+        lock.lock();
+        try {
+            return dequeue();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Runnable poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            while (count == 0) {
+                if (nanos <= 0) return null;
+                nanos = notEmpty.awaitNanos(nanos);
+            }
+            return dequeue();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Runnable take() throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while (count == 0) notEmpty.await();
+            return dequeue();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // При переполнении жертвуем самой старой задачей самого нагруженного источника из самого
+    // низкого непустого класса — а не просто самой старой в очереди.
+    Runnable pollHeaviest() {
+        lock.lock();
+        try {
+            for (int i = classes.length - 1; i >= 0; i--) {
+                PriorityClass c = classes[i];
+                Object heaviest = null;
+                int max = 0;
+                for (Map.Entry<Object, ArrayDeque<Runnable>> e : c.flows.entrySet()) {
+                    if (e.getValue().size() > max) {
+                        max = e.getValue().size();
+                        heaviest = e.getKey();
+                    }
+                }
+                if (heaviest != null) {
+                    Runnable r = c.flows.get(heaviest).pollFirst();
+                    forgetIfEmpty(c, heaviest);
+                    count--;
+                    return r;
+                }
+            }
+            return null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // источники, у которых сейчас есть задачи в очереди
+    int sources() {
+        lock.lock();
+        try {
+            int n = 0;
+            for (PriorityClass c : classes) n += c.flows.size();
+            return n;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static void forgetIfEmpty(PriorityClass c, Object source) {
+        if (c.flows.get(source).isEmpty()) {
+            c.flows.remove(source);
+            c.ring.remove(source);
+        }
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        if (!(o instanceof Runnable r)) return false;
+        lock.lock();
+        try {
+            PriorityClass c = classOf(r);
+            Object source = sourceOf(r);
+            ArrayDeque<Runnable> flow = c.flows.get(source);
+            if (flow == null || !flow.remove(r)) return false;
+            forgetIfEmpty(c, source);
+            count--;
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Runnable peek() {
+        lock.lock();
+        try {
+            for (PriorityClass c : classes) {
+                Object source = c.ring.peekFirst();
+                if (source != null) return c.flows.get(source).peekFirst();
+            }
+            return null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void put(Runnable r) throws InterruptedException {
+        // пул кладёт задачи только через offer; блокирующая вставка очереди не нужна
+        if (!offer(r)) throw new IllegalStateException("Queue full");
+    }
+
+    @Override
+    public boolean offer(Runnable r, long timeout, TimeUnit unit) {
+        return offer(r);
+    }
+
+    @Override
+    public int size() {
+        lock.lock();
+        try {
+            return count;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int remainingCapacity() {
+        lock.lock();
+        try {
+            return capacity - count;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int drainTo(Collection<? super Runnable> to) {
+        return drainTo(to, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int drainTo(Collection<? super Runnable> to, int max) {
+        lock.lock();
+        try {
+            int n = 0;
+            Runnable r;
+            while (n < max && (r = dequeue()) != null) {
+                to.add(r);
+                n++;
+            }
+            return n;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Снимок содержимого: очередь меняется под замком, а пул и сервер только просматривают
+    // её (поиск задачи для отмены) или удаляют найденное через remove.
+    @Override
+    public Iterator<Runnable> iterator() {
+        List<Runnable> snapshot = new ArrayList<>();
+        lock.lock();
+        try {
+            for (PriorityClass c : classes) {
+                for (Object source : c.ring) snapshot.addAll(c.flows.get(source));
+            }
+        } finally {
+            lock.unlock();
+        }
+        Iterator<Runnable> it = snapshot.iterator();
+        return new Iterator<>() {
+            private Runnable last;
+
+            @Override
+            public boolean hasNext() {
+                return it.hasNext();
+            }
+
+            @Override
+            public Runnable next() {
+                return last = it.next();
+            }
+
+            @Override
+            public void remove() {
+                if (last == null) throw new IllegalStateException();
+                FairQueue.this.remove(last);
+                last = null;
+            }
+        };
+    }
+}
@@ -0,0 +1,70 @@
+package org.example;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// Ответ сервера на одно имя: закрытый ключ (PKCS#8) и сертификат в DER, как они пришли по сети.
+// Части — срезы тела ответа, без копирования; на диск каждая пишется одним FileChannel.write.
+final class IssuedKey {
+    final String name;
+    private final ByteBuffer body;
+    private final ByteBuffer key;
+    private final ByteBuffer cert;
+
+    private IssuedKey(String name, ByteBuffer body, ByteBuffer key, ByteBuffer cert) {
+        this.name = name;
+        this.body = body;
+        this.key = key;
+        this.cert = cert;
+    }
+
+    // Тело ответа: [int длина][ключ][int длина][сертификат] — то же, что KeyRecord.response().
+    static IssuedKey parse(String name, ByteBuffer body) throws IOException {
+        try {
+            ByteBuffer b = body.duplicate();
+            ByteBuffer key = slice(b, b.getInt());
+            ByteBuffer cert = slice(b, b.getInt());
+            return new IssuedKey(name, body.asReadOnlyBuffer(), key, cert);
+        } catch (BufferUnderflowException | IllegalArgumentException | IndexOutOfBoundsException e) {
+            throw new EOFException("Truncated response for '" + name + "'");
+        }
+    }
+
+    private static ByteBuffer slice(ByteBuffer b, int length) {
+        ByteBuffer part = b.slice(b.position(), length).asReadOnlyBuffer();
+        b.position(b.position() + length);
+        return part;
+    }
+
+    // ответ целиком, в формате KeyRecord.response()
+    ByteBuffer response() {
+        return body.duplicate();
+    }
+
+    ByteBuffer key() {
+        return key.duplicate();
+    }
+
+    ByteBuffer cert() {
+        return cert.duplicate();
+    }
+
+    // <dir>/<name>.key и <dir>/<name>.crt
+    void save(Path dir) throws IOException {
+        write(dir.resolve(name + ".key"), key());
+        write(dir.resolve(name + ".crt"), cert());
+    }
+
+    private static void write(Path file, ByteBuffer data) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.WRITE,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            // для файла запись короче буфера бывает только при ошибке диска; цикл — на всякий случай
+            while (data.hasRemaining()) ch.write(data);
+        }
+    }
+}
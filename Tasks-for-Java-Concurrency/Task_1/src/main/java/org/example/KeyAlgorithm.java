@@ -0,0 +1,88 @@
+package org.example;
+
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.PublicKey;
+import java.security.interfaces.ECKey;
+import java.security.interfaces.EdECKey;
+import java.security.interfaces.RSAKey;
+import java.security.spec.AlgorithmParameterSpec;
+import java.security.spec.ECGenParameterSpec;
+
+// Алгоритм ключа выдаваемой пары: генератор ключей и алгоритм подписи для JcaContentSignerBuilder,
+// которым подписывает ключ этого типа. Подпись сертификата делает ключ издателя, поэтому
+// signatureAlgorithm() берётся у алгоритма ключа издателя, а не у выдаваемой пары.
+enum KeyAlgorithm {
+    RSA_2048("rsa2048", "RSA", 2048, null, "SHA256withRSA"),
+    RSA_4096("rsa4096", "RSA", 4096, null, "SHA256withRSA"),
+    RSA_8192("rsa8192", "RSA", 8192, null, "SHA256withRSA"),
+    EC_P256("ec-p256", "EC", 0, new ECGenParameterSpec("secp256r1"), "SHA256withECDSA"),
+    ED25519("ed25519", "Ed25519", 0, null, "Ed25519");
+
+    private final String id;
+    private final String jcaName;
+    private final int keySize;
+    private final AlgorithmParameterSpec params;
+    private final String signatureAlgorithm;
+
+    KeyAlgorithm(String id, String jcaName, int keySize, AlgorithmParameterSpec params, String signatureAlgorithm) {
+        this.id = id;
+        this.jcaName = jcaName;
+        this.keySize = keySize;
+        this.params = params;
+        this.signatureAlgorithm = signatureAlgorithm;
+    }
+
+    String id() {
+        return id;
+    }
+
+    String signatureAlgorithm() {
+        return signatureAlgorithm;
+    }
+
+    KeyPair generate() throws GeneralSecurityException {
+        KeyPairGenerator kpg = KeyPairGenerator.getInstance(jcaName);
+        if (params != null) {
+            kpg.initialize(params);
+        } else if (keySize > 0) {
+            kpg.initialize(keySize);
+        }
+        return kpg.generateKeyPair();
+    }
+
+    static KeyAlgorithm parse(String id) {
+        KeyAlgorithm a = find(id);
+        if (a == null) throw new IllegalArgumentException("Unknown key algorithm '" + id + "'");
+        return a;
+    }
+
+    // Ключ этого алгоритма? Для RSA сверяется и длина модуля.
+    boolean matches(PublicKey key) {
+        return switch (jcaName) {
+            case "RSA" -> key instanceof RSAKey rsa && rsa.getModulus().bitLength() == keySize;
+            case "EC" -> key instanceof ECKey ec && ec.getParams().getCurve().getField().getFieldSize() == 256;
+            default -> key instanceof EdECKey;
+        };
+    }
+
+    // null, если такого алгоритма нет
+    static KeyAlgorithm find(String id) {
+        for (KeyAlgorithm a : values()) {
+            if (a.id.equalsIgnoreCase(id)) return a;
+        }
+        return null;
+    }
+
+    // Алгоритм подписи для уже существующего ключа (ключа издателя).
+    static String signatureAlgorithmFor(Key key) {
+        switch (key.getAlgorithm()) {
+            case "RSA": return RSA_8192.signatureAlgorithm;
+            case "EC": case "ECDSA": return EC_P256.signatureAlgorithm;
+            case "Ed25519": case "EdDSA": return ED25519.signatureAlgorithm;
+            default: throw new IllegalArgumentException("Unsupported issuer key algorithm " + key.getAlgorithm());
+        }
+    }
+}
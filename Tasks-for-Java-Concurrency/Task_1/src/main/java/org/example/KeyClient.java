@@ -3,16 +3,34 @@ package org.example;
 import java.io.*;
 import java.net.InetSocketAddress;
 import java.net.Socket;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
 
 class KeyClient {
     public static void main(String[] args) throws Exception {
-        if (args.length < 3) {
+        if (args.length < 3 || ("--batch".equals(args[2]) && args.length < 4)) {
             System.out.println("Usage: KeyClient <server> <port> <name> [--delay seconds] [--exit-before-read]");
+            System.out.println("       KeyClient <server> <port> --batch <names-file> [--connections N] [--timeout ms] [--retries N]");
+            System.out.println("       KeyClient <server> <port> --load [load options, see LoadGenerator]");
             return;
         }
         String host = args[0];
         int port = Integer.parseInt(args[1]);
+        if ("--load".equals(args[2])) {
+            LoadGenerator.run(host, port, Arrays.copyOfRange(args, 3, args.length));
+            return;
+        }
+        if ("--batch".equals(args[2])) {
+            runBatch(host, port, new File(args[3]), Arrays.copyOfRange(args, 4, args.length));
+            return;
+        }
         String name = args[2];
         int delay = 0;
         boolean exitBefore = false;
@@ -22,6 +40,30 @@ class KeyClient {
         }
 
 
+        if (exitBefore) {
+            System.out.println("Exiting before reading response (simulating crash)");
+        } else if (delay > 0) {
+            System.out.println("Sleeping " + delay + "s before reading response");
+        }
+        IssuedKey response;
+        try {
+            response = fetch(host, port, name, delay * 1000L, exitBefore);
+        } catch (ServerBusyException busy) {
+            System.out.println(busy.getMessage());
+            System.exit(3);
+            return;
+        }
+        if (response == null) return;
+
+
+        response.save(Paths.get("."));
+        System.out.println("Saved " + name + ".key and " + name + ".crt");
+    }
+
+
+    // Один запрос по старому протоколу; null, если клиент ушёл, не читая ответ.
+    static IssuedKey fetch(String host, int port, String name, long delayMs, boolean exitBefore)
+            throws IOException, InterruptedException {
         try (Socket s = new Socket()) {
             s.connect(new InetSocketAddress(host, port), 5000);
             OutputStream out = s.getOutputStream();
@@ -30,38 +72,63 @@ class KeyClient {
             out.flush();
 
 
-            if (exitBefore) {
-                System.out.println("Exiting before reading response (simulating crash)");
-                return;
-            }
-
-
-            if (delay > 0) {
-                System.out.println("Sleeping " + delay + "s before reading response");
-                Thread.sleep(delay * 1000L);
-            }
-
-
-            InputStream in = s.getInputStream();
-            int keyLen = readInt(in);
-            byte[] keyBytes = in.readNBytes(keyLen);
-            int certLen = readInt(in);
-            byte[] certBytes = in.readNBytes(certLen);
+            if (exitBefore) return null;
+            if (delayMs > 0) Thread.sleep(delayMs);
 
 
-            try (FileOutputStream kf = new FileOutputStream(name + ".key")) { kf.write(keyBytes); }
-            try (FileOutputStream cf = new FileOutputStream(name + ".crt")) { cf.write(certBytes); }
-            System.out.println("Saved " + name + ".key and " + name + ".crt");
+            DataInputStream in = new DataInputStream(new BufferedInputStream(s.getInputStream()));
+            int keyLen = in.readInt();
+            if (keyLen == BatchProtocol.LEGACY_BUSY) throw new ServerBusyException(in.readInt());
+            // тело ответа целиком — [длина][ключ][длина][сертификат], его и разбирает IssuedKey
+            byte[] key = new byte[keyLen];
+            in.readFully(key);
+            int certLen = in.readInt();
+            ByteBuffer body = ByteBuffer.allocate(8 + keyLen + certLen).putInt(keyLen).put(key).putInt(certLen);
+            in.readFully(body.array(), body.position(), certLen);
+            return IssuedKey.parse(name, body.clear());
         }
     }
 
 
-    private static int readInt(InputStream in) throws IOException {
-        int a = in.read();
-        int b = in.read();
-        int c = in.read();
-        int d = in.read();
-        if (a < 0 || b < 0 || c < 0 || d < 0) throw new EOFException();
-        return (a << 24) | (b << 16) | (c << 8) | d;
+    // Пакетный режим: все имена из файла (по одному в строке) идут через AsyncKeyClient —
+    // по нескольким постоянным соединениям, с повторами при отказах; ответы приходят по мере
+    // готовности и сразу пишутся на диск.
+    private static void runBatch(String host, int port, File namesFile, String[] args) throws IOException {
+        List<String> names = new ArrayList<>();
+        for (String line : Files.readAllLines(namesFile.toPath(), StandardCharsets.US_ASCII)) {
+            if (!line.isBlank()) names.add(line.trim());
+        }
+        AsyncKeyClient.Options opts = new AsyncKeyClient.Options();
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--connections": opts.connections = Integer.parseInt(args[++i]); break;
+                case "--timeout": opts.timeoutMs = Long.parseLong(args[++i]); break;
+                case "--retries": opts.retries = Integer.parseInt(args[++i]); break;
+                default: throw new IllegalArgumentException("Unknown batch option " + args[i]);
+            }
+        }
+
+        long start = System.nanoTime();
+        AtomicInteger saved = new AtomicInteger();
+        try (AsyncKeyClient client = new AsyncKeyClient(host, port, opts)) {
+            List<CompletableFuture<?>> all = new ArrayList<>(names.size());
+            for (String name : names) {
+                all.add(client.request(name).thenAccept(key -> {
+                    try {
+                        key.save(Paths.get("."));
+                        saved.incrementAndGet();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }).exceptionally(ex -> {
+                    System.out.println("Failed " + name + ": " + (ex.getCause() != null ? ex.getCause() : ex));
+                    return null;
+                }));
+            }
+            System.out.println("Requested " + names.size() + " names over " + opts.connections + " connection(s)");
+            CompletableFuture.allOf(all.toArray(CompletableFuture<?>[]::new)).join();
+            System.out.printf("Saved %d of %d key/cert pairs in %d ms (%d retries)%n", saved.get(), names.size(),
+                    (System.nanoTime() - start) / 1_000_000, client.retried());
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,118 @@
+package org.example;
+
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Пул заранее сгенерированных пар ключей. Фоновые потоки держат его заполненным,
+// чтобы запрос нового имени платил только за построение и подпись сертификата.
+// Ёмкость 0 (--key-pool 0) выключает пул: пары генерируются на месте, потоков впрок нет.
+class KeyPairPool {
+    private final KeyAlgorithm algorithm;
+    private final int capacity;
+    private final int lowWatermark;
+    private final BlockingQueue<KeyPair> ready;
+    private final List<Thread> refillers = new ArrayList<>();
+    private final AtomicBoolean running = new AtomicBoolean(true);
+    private final Object refillLock = new Object();
+    // true, пока пул не заполнится до конца после падения ниже lowWatermark
+    private boolean refilling = true;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    KeyPairPool(KeyAlgorithm algorithm, int capacity, int refillThreads, int lowWatermark) {
+        this.algorithm = algorithm;
+        this.capacity = Math.max(0, capacity);
+        this.ready = new ArrayBlockingQueue<>(Math.max(1, capacity));
+        this.lowWatermark = Math.max(0, Math.min(lowWatermark, this.capacity - 1));
+        if (this.capacity == 0) return;
+        for (int i = 0; i < refillThreads; i++) {
+            Thread t = new Thread(this::refillLoop, "keypool-refill-" + i);
+            t.setDaemon(true);
+            // генерация впрок не должна отнимать CPU у запросов, которые ждут прямо сейчас
+            t.setPriority(Thread.MIN_PRIORITY);
+            refillers.add(t);
+        }
+    }
+
+    void start() {
+        for (Thread t : refillers) t.start();
+    }
+
+    void stop() {
+        running.set(false);
+        for (Thread t : refillers) t.interrupt();
+    }
+
+    // Берём готовую пару; если пул пуст — генерируем на месте, как раньше.
+    KeyPair take() throws GeneralSecurityException {
+        if (capacity == 0) {
+            misses.incrementAndGet();
+            return algorithm.generate();
+        }
+        KeyPair kp = ready.poll();
+        if (ready.size() <= lowWatermark) {
+            synchronized (refillLock) {
+                refilling = true;
+                refillLock.notifyAll();
+            }
+        }
+        if (kp != null) {
+            hits.incrementAndGet();
+            return kp;
+        }
+        misses.incrementAndGet();
+        return algorithm.generate();
+    }
+
+    // Пара, которая оказалась не нужна (клиенты ушли); если пул полон, она просто пропадает.
+    void giveBack(KeyPair kp) {
+        if (capacity > 0) ready.offer(kp);
+    }
+
+    int depth() {
+        return ready.size();
+    }
+
+    int capacity() {
+        return capacity;
+    }
+
+    long hits() {
+        return hits.get();
+    }
+
+    long misses() {
+        return misses.get();
+    }
+
+    private void refillLoop() {
+        while (running.get()) {
+            try {
+                synchronized (refillLock) {
+                    while (!refilling) refillLock.wait();
+                }
+                if (ready.remainingCapacity() == 0) {
+                    // пул полон — засыпаем до следующего падения ниже lowWatermark
+                    synchronized (refillLock) {
+                        if (ready.remainingCapacity() == 0) refilling = false;
+                    }
+                    continue;
+                }
+                ready.offer(algorithm.generate());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (GeneralSecurityException e) {
+                Log.error("Key pool refill failed", e);
+                return;
+            }
+        }
+    }
+}
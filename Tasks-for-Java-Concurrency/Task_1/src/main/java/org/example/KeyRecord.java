@@ -0,0 +1,55 @@
+package org.example;
+
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.PrivateKey;
+import java.security.cert.CertificateEncodingException;
+import java.security.cert.CertificateFactory;
+import java.security.cert.X509Certificate;
+import java.security.spec.PKCS8EncodedKeySpec;
+
+class KeyRecord {
+    final PrivateKey privateKey;
+    final X509Certificate cert;
+    // готовый ответ: 4 байта длины ключа, ключ, 4 байта длины сертификата, сертификат.
+    // Кодируется один раз, дальше каждому клиенту отдаётся read-only копия позиций.
+    private final ByteBuffer response;
+
+    KeyRecord(PrivateKey p, X509Certificate c) throws CertificateEncodingException {
+        privateKey = p;
+        cert = c;
+        byte[] keyBytes = p.getEncoded();
+        byte[] certBytes = c.getEncoded();
+        ByteBuffer buf = ByteBuffer.allocateDirect(8 + keyBytes.length + certBytes.length);
+        buf.putInt(keyBytes.length).put(keyBytes);
+        buf.putInt(certBytes.length).put(certBytes);
+        response = buf.flip().asReadOnlyBuffer();
+    }
+
+    private KeyRecord(PrivateKey p, X509Certificate c, ByteBuffer framed) {
+        privateKey = p;
+        cert = c;
+        response = framed.asReadOnlyBuffer();
+    }
+
+    // Восстанавливаем запись из уже оформленного ответа (например, прочитанного с диска).
+    static KeyRecord fromResponse(ByteBuffer framed) throws GeneralSecurityException {
+        ByteBuffer in = framed.duplicate();
+        byte[] keyBytes = new byte[in.getInt()];
+        in.get(keyBytes);
+        byte[] certBytes = new byte[in.getInt()];
+        in.get(certBytes);
+
+        CertificateFactory cf = CertificateFactory.getInstance("X.509");
+        X509Certificate cert = (X509Certificate) cf.generateCertificate(new ByteArrayInputStream(certBytes));
+        String alg = cert.getPublicKey().getAlgorithm();
+        PrivateKey key = KeyFactory.getInstance(alg).generatePrivate(new PKCS8EncodedKeySpec(keyBytes));
+        return new KeyRecord(key, cert, framed);
+    }
+
+    ByteBuffer response() {
+        return response.duplicate();
+    }
+}
@@ -0,0 +1,207 @@
+package org.example;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Генератор нагрузки на KeyServer поверх KeyClient.fetch: каждый запрос — отдельное
+// соединение старого протокола, каждый клиент — виртуальный поток.
+//
+// closed — фиксированное число клиентов, каждый шлёт следующий запрос сразу после ответа.
+// open   — запросы приходят с фиксированной частотой независимо от ответов. Задержка
+//          считается от запланированного момента старта, а не от фактического, иначе
+//          отставание генератора прячет очередь на сервере (coordinated omission).
+//
+// Доля повторных имён берётся из небольшого "горячего" набора, остальные имена новые.
+// Медленные читатели (--delay) и ушедшие клиенты (--exit-before-read) считаются отдельно
+// и в гистограмму не попадают: их время определяет клиент, а не сервер. Отказы сервера
+// из-за перегрузки ("busy") тоже считаются отдельно и не повторяются.
+class LoadGenerator {
+    private static final long HIGHEST_MICROS = TimeUnit.MINUTES.toMicros(10);
+
+    private String mode = "closed";
+    private int concurrency = 16;
+    private double rate = 50;
+    private int maxInflight = 10_000;
+    private int durationSec = 30;
+    private double repeatRatio = 0.5;
+    private int hotNames = 16;
+    private double slowRatio = 0;
+    private long slowDelayMs = 1000;
+    private double abandonRatio = 0;
+    private String keySuffix = "";
+    private String reportFile;
+
+    private final String host;
+    private final int port;
+    private final String runId = Long.toString(System.currentTimeMillis(), 36);
+    private final AtomicLong newNames = new AtomicLong();
+
+    private final Histogram latency = new ConcurrentHistogram(HIGHEST_MICROS, 3);
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong repeated = new AtomicLong();
+    private final AtomicLong slow = new AtomicLong();
+    private final AtomicLong abandoned = new AtomicLong();
+    private final AtomicLong busy = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private volatile String lastError;
+
+    private LoadGenerator(String host, int port) {
+        this.host = host;
+        this.port = port;
+    }
+
+    static void run(String host, int port, String[] args) throws Exception {
+        LoadGenerator gen = new LoadGenerator(host, port);
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--mode": gen.mode = args[++i]; break;
+                case "--concurrency": gen.concurrency = Integer.parseInt(args[++i]); break;
+                case "--rate": gen.rate = Double.parseDouble(args[++i]); break;
+                case "--max-inflight": gen.maxInflight = Integer.parseInt(args[++i]); break;
+                case "--duration": gen.durationSec = Integer.parseInt(args[++i]); break;
+                case "--repeat-ratio": gen.repeatRatio = Double.parseDouble(args[++i]); break;
+                case "--hot-names": gen.hotNames = Math.max(1, Integer.parseInt(args[++i])); break;
+                case "--slow-ratio": gen.slowRatio = Double.parseDouble(args[++i]); break;
+                case "--delay": gen.slowDelayMs = Long.parseLong(args[++i]); break;
+                case "--abandon-ratio": gen.abandonRatio = Double.parseDouble(args[++i]); break;
+                case "--key-suffix": gen.keySuffix = args[++i]; break;
+                case "--report": gen.reportFile = args[++i]; break;
+                default:
+                    System.err.println("Unknown load arg " + args[i]);
+                    System.err.println("Load options: --mode closed|open --concurrency N --rate req/s --max-inflight N"
+                            + " --duration s --repeat-ratio 0..1 --hot-names N --slow-ratio 0..1 --delay ms"
+                            + " --abandon-ratio 0..1 --key-suffix #alg --report file");
+                    System.exit(1);
+            }
+        }
+        switch (gen.mode) {
+            case "closed": gen.runClosed(); break;
+            case "open": gen.runOpen(); break;
+            default: throw new IllegalArgumentException("Unknown load mode " + gen.mode);
+        }
+    }
+
+    private void runClosed() throws Exception {
+        long t0 = System.nanoTime();
+        long end = t0 + TimeUnit.SECONDS.toNanos(durationSec);
+        try (ExecutorService exec = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < concurrency; i++) {
+                exec.submit(() -> {
+                    while (System.nanoTime() < end) one(System.nanoTime());
+                });
+            }
+        }
+        report(t0);
+    }
+
+    private void runOpen() throws Exception {
+        long intervalNs = (long) (1e9 / rate);
+        long t0 = System.nanoTime();
+        long end = t0 + TimeUnit.SECONDS.toNanos(durationSec);
+        Semaphore slots = new Semaphore(maxInflight);
+        try (ExecutorService exec = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (long intended = t0; intended < end; intended += intervalNs) {
+                long wait = intended - System.nanoTime();
+                if (wait > 0) TimeUnit.NANOSECONDS.sleep(wait);
+                // предел одновременных соединений защищает сам генератор; сброшенные запросы видны в отчёте
+                if (!slots.tryAcquire()) {
+                    dropped.incrementAndGet();
+                    continue;
+                }
+                long start = intended;
+                exec.submit(() -> {
+                    try {
+                        one(start);
+                    } finally {
+                        slots.release();
+                    }
+                });
+            }
+        }
+        report(t0);
+    }
+
+    // Один запрос; start — момент, от которого считается задержка.
+    private void one(long start) {
+        ThreadLocalRandom rnd = ThreadLocalRandom.current();
+        boolean repeat = rnd.nextDouble() < repeatRatio;
+        String name = repeat
+                ? "hot-" + runId + "-" + rnd.nextInt(hotNames)
+                : "load-" + runId + "-" + newNames.incrementAndGet();
+        double kind = rnd.nextDouble();
+        boolean abandon = kind < abandonRatio;
+        boolean isSlow = !abandon && kind < abandonRatio + slowRatio;
+
+        try {
+            KeyClient.fetch(host, port, name + keySuffix, isSlow ? slowDelayMs : 0, abandon);
+            if (abandon) {
+                abandoned.incrementAndGet();
+            } else if (isSlow) {
+                slow.incrementAndGet();
+            } else {
+                latency.recordValue(Math.min(HIGHEST_MICROS, (System.nanoTime() - start) / 1000));
+                completed.incrementAndGet();
+                if (repeat) repeated.incrementAndGet();
+            }
+        } catch (ServerBusyException e) {
+            busy.incrementAndGet();
+        } catch (IOException e) {
+            errors.incrementAndGet();
+            lastError = e.toString();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void report(long t0) throws IOException {
+        double elapsed = (System.nanoTime() - t0) / 1e9;
+        ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        PrintStream out = new PrintStream(buf, true, StandardCharsets.UTF_8);
+        out.printf("target      %s:%d%n", host, port);
+        if ("open".equals(mode)) {
+            out.printf("mode        open, %.1f req/s, max in-flight %d%n", rate, maxInflight);
+        } else {
+            out.printf("mode        closed, %d clients%n", concurrency);
+        }
+        out.printf("duration    %.1f s%n", elapsed);
+        out.printf("mix         repeat %.2f (hot set %d), slow %.2f (%d ms), abandon %.2f, suffix '%s'%n",
+                repeatRatio, hotNames, slowRatio, slowDelayMs, abandonRatio, keySuffix);
+        out.printf("completed   %d (%d repeated), %.1f req/s%n", completed.get(), repeated.get(), completed.get() / elapsed);
+        out.printf("slow        %d%n", slow.get());
+        out.printf("abandoned   %d%n", abandoned.get());
+        out.printf("busy        %d%n", busy.get());
+        out.printf("errors      %d%s%n", errors.get(), lastError == null ? "" : " (last: " + lastError + ")");
+        if (dropped.get() > 0) out.printf("dropped     %d (in-flight limit)%n", dropped.get());
+        out.printf("latency ms  p50 %.2f  p90 %.2f  p99 %.2f  p99.9 %.2f  max %.2f%n",
+                ms(latency.getValueAtPercentile(50)), ms(latency.getValueAtPercentile(90)),
+                ms(latency.getValueAtPercentile(99)), ms(latency.getValueAtPercentile(99.9)),
+                ms(latency.getMaxValue()));
+        out.println();
+        latency.outputPercentileDistribution(out, 1000.0);
+
+        String text = buf.toString(StandardCharsets.UTF_8);
+        System.out.print(text);
+        if (reportFile != null) {
+            Files.writeString(Paths.get(reportFile), text, StandardCharsets.UTF_8);
+            System.out.println("Report written to " + reportFile);
+        }
+    }
+
+    private static double ms(long micros) {
+        return micros / 1000.0;
+    }
+}
@@ -0,0 +1,111 @@
+package org.example;
+
+import java.io.PrintStream;
+import java.time.Instant;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Асинхронный лог с уровнями. Вызывающий поток только кладёт событие в очередь, строку
+// собирает и печатает отдельный поток. Отключённый уровень стоит одной проверки; при
+// переполнении очереди события отбрасываются (и считаются), а не тормозят сервер.
+//
+// Шаблон сообщения — с подстановками "{}"; если последний аргумент — Throwable, после
+// строки печатается его стек.
+final class Log {
+    enum Level { ERROR, WARN, INFO, DEBUG }
+
+    private static final int QUEUE = 64 * 1024;
+
+    private static volatile Level level = Level.INFO;
+    private static final BlockingQueue<Event> queue = new ArrayBlockingQueue<>(QUEUE);
+    private static final AtomicLong dropped = new AtomicLong();
+
+    private record Event(long time, Level level, String thread, String format, Object[] args) {}
+
+    static {
+        Thread writer = new Thread(Log::writeLoop, "log-writer");
+        writer.setDaemon(true);
+        writer.start();
+        // при выходе дописываем то, что осталось в очереди
+        Runtime.getRuntime().addShutdownHook(new Thread(Log::drain, "log-flush"));
+    }
+
+    private Log() {}
+
+    static void setLevel(Level l) {
+        level = l;
+    }
+
+    static Level parseLevel(String s) {
+        return Level.valueOf(s.toUpperCase());
+    }
+
+    static boolean enabled(Level l) {
+        return l.ordinal() <= level.ordinal();
+    }
+
+    static void error(String format, Object... args) { log(Level.ERROR, format, args); }
+    static void warn(String format, Object... args) { log(Level.WARN, format, args); }
+    static void info(String format, Object... args) { log(Level.INFO, format, args); }
+    static void debug(String format, Object... args) { log(Level.DEBUG, format, args); }
+
+    // события, потерянные из-за переполнения очереди
+    static long dropped() {
+        return dropped.get();
+    }
+
+    private static void log(Level l, String format, Object[] args) {
+        if (!enabled(l)) return;
+        Event e = new Event(System.currentTimeMillis(), l, Thread.currentThread().getName(), format, args);
+        if (!queue.offer(e)) dropped.incrementAndGet();
+    }
+
+    private static void writeLoop() {
+        while (true) {
+            try {
+                write(queue.take());
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    // Дописать всё, что уже в очереди (например, перед выходом из main).
+    static void flush() {
+        drain();
+    }
+
+    private static synchronized void drain() {
+        Event e;
+        while ((e = queue.poll()) != null) write(e);
+        System.out.flush();
+    }
+
+    private static synchronized void write(Event e) {
+        StringBuilder sb = new StringBuilder(128);
+        sb.append(LocalTime.ofInstant(Instant.ofEpochMilli(e.time), ZoneId.systemDefault())).append(' ')
+                .append(e.level).append(' ')
+                .append('[').append(e.thread).append("] ");
+        Throwable t = format(sb, e.format, e.args);
+        // System.out берём в момент печати: бенчмарки подменяют его, чтобы заглушить лог
+        PrintStream out = e.level.ordinal() <= Level.WARN.ordinal() ? System.err : System.out;
+        out.println(sb);
+        if (t != null) t.printStackTrace(out);
+    }
+
+    private static Throwable format(StringBuilder sb, String format, Object[] args) {
+        int arg = 0;
+        int from = 0;
+        int at;
+        while ((at = format.indexOf("{}", from)) >= 0 && arg < args.length) {
+            sb.append(format, from, at).append(args[arg++]);
+            from = at + 2;
+        }
+        sb.append(format, from, format.length());
+        if (args.length > arg && args[args.length - 1] instanceof Throwable t) return t;
+        return null;
+    }
+}
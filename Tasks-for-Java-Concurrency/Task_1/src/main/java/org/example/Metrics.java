@@ -0,0 +1,166 @@
+package org.example;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+// Метрики сервера в формате Prometheus (text exposition 0.0.4).
+// Счётчики и гистограммы — на LongAdder: запись из горячих путей не упирается в общий
+// CAS. Гауги и счётчики, которые уже ведут другие классы (реестр, пул, очередь),
+// регистрируются как функции и читаются только при опросе.
+class Metrics {
+    // границы корзин гистограмм, секунды: от долей миллисекунды до генерации RSA-8192
+    private static final double[] BUCKETS = {
+            0.0005, 0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10, 30, 60, 120
+    };
+
+    private final List<Metric> metrics = new ArrayList<>();
+
+    final Counter accepted = counter("keyserver_connections_accepted_total", "Accepted client connections");
+    final Counter active = gaugeCounter("keyserver_connections_active", "Currently open client connections");
+    final Counter bytesSent = counter("keyserver_bytes_sent_total", "Response bytes written to clients");
+    final Histogram keygen = histogram("keyserver_keygen_seconds", "Key pair generation or key pool take", "");
+    final Histogram signing = histogram("keyserver_signing_seconds", "Certificate build and signing", "");
+    final Histogram readPhase = histogram("keyserver_request_phase_seconds", "Request latency by phase", "phase=\"read\"");
+    final Histogram waitPhase = histogram("keyserver_request_phase_seconds", "Request latency by phase", "phase=\"wait\"");
+    final Histogram writePhase = histogram("keyserver_request_phase_seconds", "Request latency by phase", "phase=\"write\"");
+    final Histogram renewalWait = histogram("keyserver_generation_wait_seconds", "Time a generation waited for a worker, by priority class", "class=\"renewal\"");
+    final Histogram newWait = histogram("keyserver_generation_wait_seconds", "Time a generation waited for a worker, by priority class", "class=\"new\"");
+
+    private abstract static class Metric {
+        final String name;
+        final String help;
+        final String type;
+
+        Metric(String name, String help, String type) {
+            this.name = name;
+            this.help = help;
+            this.type = type;
+        }
+
+        abstract void write(StringBuilder sb);
+    }
+
+    static final class Counter extends Metric {
+        private final LongAdder value = new LongAdder();
+
+        private Counter(String name, String help, String type) {
+            super(name, help, type);
+        }
+
+        void inc() { value.increment(); }
+        void dec() { value.decrement(); }
+        void add(long n) { value.add(n); }
+        long get() { return value.sum(); }
+
+        @Override
+        void write(StringBuilder sb) {
+            sb.append(name).append(' ').append(value.sum()).append('\n');
+        }
+    }
+
+    private static final class Function extends Metric {
+        private final LongSupplier value;
+
+        Function(String name, String help, String type, LongSupplier value) {
+            super(name, help, type);
+            this.value = value;
+        }
+
+        @Override
+        void write(StringBuilder sb) {
+            sb.append(name).append(' ').append(value.getAsLong()).append('\n');
+        }
+    }
+
+    // Кумулятивная гистограмма Prometheus; значения приходят в наносекундах.
+    static final class Histogram extends Metric {
+        private final String labels;
+        private final LongAdder[] buckets = new LongAdder[BUCKETS.length];
+        private final LongAdder count = new LongAdder();
+        private final LongAdder sumNanos = new LongAdder();
+
+        private Histogram(String name, String help, String labels) {
+            super(name, help, "histogram");
+            this.labels = labels;
+            for (int i = 0; i < buckets.length; i++) buckets[i] = new LongAdder();
+        }
+
+        void observeNanos(long nanos) {
+            double seconds = nanos / 1e9;
+            // корзины храним не кумулятивно — одна запись на наблюдение, суммируем при опросе
+            int i = 0;
+            while (i < BUCKETS.length && seconds > BUCKETS[i]) i++;
+            if (i < BUCKETS.length) buckets[i].increment();
+            count.increment();
+            sumNanos.add(nanos);
+        }
+
+        // время от start (System.nanoTime()) до сейчас
+        void observeSince(long start) {
+            observeNanos(System.nanoTime() - start);
+        }
+
+        long count() {
+            return count.sum();
+        }
+
+        @Override
+        void write(StringBuilder sb) {
+            String sep = labels.isEmpty() ? "" : ",";
+            long cumulative = 0;
+            for (int i = 0; i < BUCKETS.length; i++) {
+                cumulative += buckets[i].sum();
+                sb.append(name).append("_bucket{").append(labels).append(sep)
+                        .append("le=\"").append(BUCKETS[i]).append("\"} ").append(cumulative).append('\n');
+            }
+            String braces = labels.isEmpty() ? "" : "{" + labels + "}";
+            sb.append(name).append("_bucket{").append(labels).append(sep).append("le=\"+Inf\"} ").append(count.sum()).append('\n');
+            sb.append(name).append("_sum").append(braces).append(' ').append(sumNanos.sum() / 1e9).append('\n');
+            sb.append(name).append("_count").append(braces).append(' ').append(count.sum()).append('\n');
+        }
+    }
+
+    Counter counter(String name, String help) {
+        return add(new Counter(name, help, "counter"));
+    }
+
+    // счётчик, который может уменьшаться, — гауг
+    Counter gaugeCounter(String name, String help) {
+        return add(new Counter(name, help, "gauge"));
+    }
+
+    Histogram histogram(String name, String help, String labels) {
+        return add(new Histogram(name, help, labels));
+    }
+
+    void gauge(String name, String help, LongSupplier value) {
+        add(new Function(name, help, "gauge", value));
+    }
+
+    void counter(String name, String help, LongSupplier value) {
+        add(new Function(name, help, "counter", value));
+    }
+
+    private synchronized <M extends Metric> M add(M m) {
+        metrics.add(m);
+        return m;
+    }
+
+    // Текст для /metrics. HELP и TYPE печатаются один раз на семейство (метрики с метками
+    // регистрируются подряд).
+    synchronized String scrape() {
+        StringBuilder sb = new StringBuilder(4096);
+        String family = null;
+        for (Metric m : metrics) {
+            if (!m.name.equals(family)) {
+                family = m.name;
+                sb.append("# HELP ").append(m.name).append(' ').append(m.help).append('\n');
+                sb.append("# TYPE ").append(m.name).append(' ').append(m.type).append('\n');
+            }
+            m.write(sb);
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,84 @@
+package org.example;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Встроенный HTTP-эндпоинт для опроса метрик: GET /metrics в текстовом формате Prometheus.
+// Отдельный маленький сервер из JDK, чтобы опрос не делил реакторы с клиентами ключей.
+// Здесь же административные команды (POST /admin/...), только с loopback-адресов.
+class MetricsEndpoint implements AutoCloseable {
+    private final HttpServer http;
+    private final ExecutorService exec = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "metrics-http");
+        t.setDaemon(true);
+        return t;
+    });
+
+    MetricsEndpoint(int port, Metrics metrics) throws IOException {
+        http = HttpServer.create(new InetSocketAddress(port), 16);
+        http.createContext("/metrics", ex -> respond(ex, metrics));
+        http.setExecutor(exec);
+    }
+
+    void admin(String path, Callable<String> action) {
+        http.createContext(path, ex -> {
+            try (ex) {
+                if (!"POST".equals(ex.getRequestMethod())) {
+                    ex.sendResponseHeaders(405, -1);
+                    return;
+                }
+                if (!ex.getRemoteAddress().getAddress().isLoopbackAddress()) {
+                    ex.sendResponseHeaders(403, -1);
+                    return;
+                }
+                int status = 200;
+                String text;
+                try {
+                    text = action.call();
+                } catch (Exception e) {
+                    status = 500;
+                    text = String.valueOf(e);
+                }
+                byte[] body = (text + "\n").getBytes(StandardCharsets.UTF_8);
+                ex.sendResponseHeaders(status, body.length);
+                try (OutputStream out = ex.getResponseBody()) {
+                    out.write(body);
+                }
+            }
+        });
+    }
+
+    void start() {
+        http.start();
+        Log.info("Metrics on http://localhost:{}/metrics", http.getAddress().getPort());
+    }
+
+    private static void respond(HttpExchange ex, Metrics metrics) throws IOException {
+        try (ex) {
+            if (!"GET".equals(ex.getRequestMethod())) {
+                ex.sendResponseHeaders(405, -1);
+                return;
+            }
+            byte[] body = metrics.scrape().getBytes(StandardCharsets.UTF_8);
+            ex.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+            ex.sendResponseHeaders(200, body.length);
+            try (OutputStream out = ex.getResponseBody()) {
+                out.write(body);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        http.stop(0);
+        exec.shutdownNow();
+    }
+}
@@ -0,0 +1,130 @@
+package org.example;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+// Ограниченный реестр имя -> future с ключом. Разбит на полосы (stripes) со своими замками;
+// внутри полосы LinkedHashMap в порядке доступа даёт LRU. Записи вытесняются по числу и по
+// суммарному размеру ответов, истекают вместе с notAfter сертификата, а неудачные future
+// удаляются сразу, чтобы имя можно было запросить повторно.
+class NameRegistry {
+    private static final int STRIPES = 16;
+
+    private final Stripe[] stripes = new Stripe[STRIPES];
+    private final int maxEntriesPerStripe;
+    private final long maxBytesPerStripe;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong expirations = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+
+    private static class Entry {
+        final CompletableFuture<KeyRecord> future;
+        long weight;                      // байт в готовом ответе; 0, пока ключ не готов
+        long expiresAt = Long.MAX_VALUE;  // notAfter сертификата, мс
+
+        Entry(CompletableFuture<KeyRecord> f) { future = f; }
+    }
+
+    private static class Stripe {
+        final LinkedHashMap<String, Entry> map = new LinkedHashMap<>(16, 0.75f, true);
+        long weight;
+    }
+
+    NameRegistry(int maxEntries, long maxBytes) {
+        this.maxEntriesPerStripe = Math.max(1, (maxEntries + STRIPES - 1) / STRIPES);
+        this.maxBytesPerStripe = Math.max(1, (maxBytes + STRIPES - 1) / STRIPES);
+        for (int i = 0; i < STRIPES; i++) stripes[i] = new Stripe();
+    }
+
+    // Возвращает future для имени; при промахе создаёт его через loader. loader вызывается
+    // под замком полосы, поэтому он только создаёт future, а работу ставит вызывающий.
+    CompletableFuture<KeyRecord> computeIfAbsent(String name, Function<String, CompletableFuture<KeyRecord>> loader) {
+        Stripe s = stripeFor(name);
+        CompletableFuture<KeyRecord> f;
+        synchronized (s) {
+            Entry e = s.map.get(name);
+            if (e != null) {
+                if (e.expiresAt > System.currentTimeMillis()) {
+                    hits.incrementAndGet();
+                    return e.future;
+                }
+                remove(s, name);
+                expirations.incrementAndGet();
+            }
+            misses.incrementAndGet();
+            f = loader.apply(name);
+            s.map.put(name, new Entry(f));
+            evictIfNeeded(s);
+        }
+        f.whenComplete((kr, ex) -> onComplete(s, name, f, kr, ex));
+        return f;
+    }
+
+    private void onComplete(Stripe s, String name, CompletableFuture<KeyRecord> f, KeyRecord kr, Throwable ex) {
+        synchronized (s) {
+            Entry e = s.map.get(name);
+            if (e == null || e.future != f) return; // уже вытеснена или заменена
+            if (ex != null) {
+                remove(s, name);
+                failures.incrementAndGet();
+                return;
+            }
+            e.weight = kr.response().remaining();
+            e.expiresAt = kr.cert.getNotAfter().getTime();
+            s.weight += e.weight;
+            evictIfNeeded(s);
+        }
+    }
+
+    // Вытесняем самые давние готовые записи. Незавершённые не трогаем: их ждут клиенты,
+    // а повторный запрос того же имени запустил бы вторую генерацию.
+    private void evictIfNeeded(Stripe s) {
+        Iterator<Map.Entry<String, Entry>> it = s.map.entrySet().iterator();
+        while ((s.map.size() > maxEntriesPerStripe || s.weight > maxBytesPerStripe) && it.hasNext()) {
+            Entry e = it.next().getValue();
+            if (!e.future.isDone()) continue;
+            it.remove();
+            s.weight -= e.weight;
+            evictions.incrementAndGet();
+        }
+    }
+
+    private void remove(Stripe s, String name) {
+        Entry e = s.map.remove(name);
+        if (e != null) s.weight -= e.weight;
+    }
+
+    private Stripe stripeFor(String name) {
+        int h = name.hashCode();
+        return stripes[(h ^ (h >>> 16)) & (STRIPES - 1)];
+    }
+
+    int size() {
+        int n = 0;
+        for (Stripe s : stripes) {
+            synchronized (s) { n += s.map.size(); }
+        }
+        return n;
+    }
+
+    long weight() {
+        long w = 0;
+        for (Stripe s : stripes) {
+            synchronized (s) { w += s.weight; }
+        }
+        return w;
+    }
+
+    long hits() { return hits.get(); }
+    long misses() { return misses.get(); }
+    long evictions() { return evictions.get(); }
+    long expirations() { return expirations.get(); }
+    long failures() { return failures.get(); }
+}
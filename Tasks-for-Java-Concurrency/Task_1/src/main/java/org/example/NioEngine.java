@@ -0,0 +1,530 @@
+package org.example;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Неблокирующий движок: один поток принимает соединения, N реакторов читают имена и пишут ответы.
+class NioEngine implements ServerEngine {
+    // сколько кадров ответа отдаём в один gathering write
+    private static final int MAX_GATHER = 64;
+    // Буферы чтения из пулов реактора: малый — под имя старого протокола, большой — под
+    // кадры пакетного режима и длинные имена (до MAX_NAME). Сколько свободных держать.
+    private static final int SMALL_BUFFER = 1024;
+    private static final int LARGE_BUFFER = 2 * (BatchProtocol.REQUEST_HEADER + BatchProtocol.MAX_NAME);
+    private static final int POOLED_SMALL = 4096;
+    private static final int POOLED_LARGE = 256;
+    private static final int POOLED_HEADERS = 4096;
+
+    private final KeyServer server;
+    private final Metrics metrics;
+    private final Reactor[] reactors;
+    private final AtomicInteger nextReactor = new AtomicInteger();
+    private volatile Selector acceptSelector;
+    // реакторы работают, пока их не закроют: после остановки приёма они дописывают ответы
+    private volatile boolean closed;
+
+    NioEngine(KeyServer server, int reactors) {
+        this.server = server;
+        this.metrics = server.metrics();
+        this.reactors = new Reactor[Math.max(1, reactors)];
+        metrics.gauge("keyserver_buffer_pool_direct_bytes", "Direct memory allocated by reactor buffer pools", () -> {
+            long sum = 0;
+            for (Reactor r : this.reactors) {
+                if (r != null) sum += r.small.allocatedBytes() + r.large.allocatedBytes() + r.headers.allocatedBytes();
+            }
+            return sum;
+        });
+    }
+
+    @Override
+    public String describe() {
+        return "NIO engine, " + reactors.length + " reactor(s)";
+    }
+
+    // Главный поток только принимает соединения и раздаёт их рабочим реакторам,
+    // у каждого из которых свой селектор, свои вложения и своя очередь пробуждений.
+    @Override
+    public void serve(ServerSocketChannel ssc) throws IOException {
+        for (int i = 0; i < reactors.length; i++) {
+            reactors[i] = new Reactor(Selector.open());
+            Thread t = new Thread(reactors[i], "reactor-" + i);
+            t.setDaemon(true);
+            t.start();
+        }
+
+        Selector acceptSelector = Selector.open();
+        this.acceptSelector = acceptSelector;
+        ssc.configureBlocking(false);
+        ssc.register(acceptSelector, SelectionKey.OP_ACCEPT);
+
+        try {
+            while (server.isRunning()) {
+                acceptSelector.select(); // блокирует до события
+                Iterator<SelectionKey> it = acceptSelector.selectedKeys().iterator();
+                while (it.hasNext()) {
+                    SelectionKey key = it.next();
+                    it.remove();
+                    if (key.isAcceptable()) {
+                        doAccept((ServerSocketChannel) key.channel());
+                    }
+                }
+            }
+        } finally {
+            acceptSelector.close();
+        }
+    }
+
+    @Override
+    public void stopAccepting() {
+        Selector s = acceptSelector;
+        if (s != null) s.wakeup();
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        for (Reactor r : reactors) {
+            if (r != null) r.selector.wakeup();
+        }
+    }
+
+    // За одно пробуждение разбираем весь backlog, чтобы шторм подключений не ждал select().
+    private void doAccept(ServerSocketChannel ssc) {
+        while (true) {
+            SocketChannel sc = null;
+            try {
+                sc = ssc.accept();
+                if (sc == null) return;
+                sc.configureBlocking(false);
+                metrics.accepted.inc();
+                metrics.active.inc();
+                Log.debug("Accepted connection from {}", sc.getRemoteAddress());
+                pickReactor().register(sc);
+            } catch (IOException ex) {
+                KeyServer.closeSilently(sc);
+                if (sc == null) return;
+            }
+        }
+    }
+
+    // Наименее загруженный реактор; обход начинаем по кругу, чтобы при равной нагрузке
+    // соединения распределялись round-robin.
+    private Reactor pickReactor() {
+        int start = Math.floorMod(nextReactor.getAndIncrement(), reactors.length);
+        Reactor best = reactors[start];
+        for (int i = 1; i < reactors.length; i++) {
+            Reactor r = reactors[(start + i) % reactors.length];
+            if (r.connections.get() < best.connections.get()) best = r;
+        }
+        return best;
+    }
+
+    // Рабочий реактор: обслуживает чтение имени и запись ответа для своих соединений.
+    // Все операции с каналами выполняются только в его потоке.
+    private class Reactor implements Runnable {
+        final Selector selector;
+        // новые соединения от главного потока
+        final Queue<SocketChannel> newChannels = new ConcurrentLinkedQueue<>();
+        // ответы, готовые к отправке
+        final Queue<PendingWrite> readyWrites = new ConcurrentLinkedQueue<>();
+        final AtomicInteger connections = new AtomicInteger();
+        final BufferPool small = new BufferPool(SMALL_BUFFER, POOLED_SMALL);
+        final BufferPool large = new BufferPool(LARGE_BUFFER, POOLED_LARGE);
+        final BufferPool headers = new BufferPool(BatchProtocol.RESPONSE_HEADER, POOLED_HEADERS);
+        // куда читаются байты после имени старого протокола: нужны только EOF, содержимое не важно
+        private final ByteBuffer sink = ByteBuffer.allocateDirect(256);
+        // имя копируется сюда из direct-буфера и сразу становится строкой
+        private final byte[] nameScratch = new byte[BatchProtocol.MAX_PEER_NAME];
+
+        Reactor(Selector selector) {
+            this.selector = selector;
+        }
+
+        void register(SocketChannel sc) {
+            connections.incrementAndGet();
+            newChannels.add(sc);
+            selector.wakeup();
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (!closed) {
+                    selector.select(); // блокирует до события или wakeup()
+                    registerNewChannels();
+                    registerReadyWrites();
+                    Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+                    while (it.hasNext()) {
+                        SelectionKey key = it.next();
+                        it.remove();
+
+                        try {
+                            // в пакетном режиме канал может быть готов и на чтение, и на запись
+                            if (key.isReadable()) doRead(key);
+                            if (key.isValid() && key.isWritable()) doWrite(key);
+                        } catch (CancelledKeyException cke) {
+                            // клиент мог закрыть соединение — игнорируем
+                        } catch (IOException ex) {
+                            close((SocketChannel) key.channel());
+                        }
+                    }
+                }
+                closeAll();
+            } catch (IOException | ClosedSelectorException e) {
+                // селектор закрыт при остановке сервера
+            }
+        }
+
+        // Движок закрыт: рвём соединения, не успевшие получить ответ за время дренажа.
+        private void closeAll() throws IOException {
+            for (SelectionKey key : selector.keys()) {
+                if (key.channel() instanceof SocketChannel sc) close(sc);
+            }
+            selector.close();
+        }
+
+        private void registerNewChannels() {
+            SocketChannel sc;
+            while ((sc = newChannels.poll()) != null) {
+                try {
+                    // привязываем к ключу объект для накопления байтов имени
+                    SelectionKey key = sc.register(selector, SelectionKey.OP_READ);
+                    key.attach(new ClientAttachment(small.take()));
+                } catch (IOException e) {
+                    close(sc);
+                }
+            }
+        }
+
+        // Первые байты соединения определяют протокол: MAGIC — пакетный, иначе старое "имя\0".
+        private void doRead(SelectionKey key) throws IOException {
+            SocketChannel sc = (SocketChannel) key.channel();
+            ClientAttachment att = (ClientAttachment) key.attachment();
+
+            if (att.named) {
+                // имя уже получено; дальше читаем только ради EOF, всё прочее отбрасываем
+                if (sc.read(sink.clear()) == -1) close(sc);
+                return;
+            }
+            int read = sc.read(att.buffer);
+            if (read == -1) { // EOF — клиент закрыл соединение
+                if (att.batch) {
+                    // половинное закрытие: запросов больше не будет, но ответы ещё ждут
+                    att.inputClosed = true;
+                    key.interestOps(key.interestOps() & ~SelectionKey.OP_READ);
+                    closeIfDone(key);
+                } else {
+                    close(sc);
+                }
+                return;
+            }
+
+            ByteBuffer buf = att.buffer.flip();
+            if (!att.batch && !att.legacy && buf.hasRemaining()) {
+                if (BatchProtocol.startsBatch(buf.get(0))) {
+                    if (buf.remaining() < BatchProtocol.MAGIC.length) {
+                        buf.compact();
+                        return;
+                    }
+                    att.peer = BatchProtocol.isPeerMagic(buf, 0);
+                    if (!att.peer && !BatchProtocol.isMagic(buf, 0)) {
+                        close(sc);
+                        return;
+                    }
+                    if (att.peer && !server.acceptsPeer(sc)) {
+                        Log.warn("Peer handshake from a node not in --peers, closing {}", sc.getRemoteAddress());
+                        close(sc);
+                        return;
+                    }
+                    buf.position(BatchProtocol.MAGIC.length);
+                    startBatch(att);
+                } else {
+                    att.legacy = true;
+                }
+            }
+            if (att.batch) {
+                readBatch(key, att);
+            } else {
+                readName(key, att);
+            }
+        }
+
+        // Пакетный режим: кадр может быть длиннее малого буфера — переносим прочитанное в большой.
+        private void startBatch(ClientAttachment att) {
+            att.batch = true;
+            ByteBuffer bigger = large.take().put(att.buffer).flip();
+            small.give(att.buffer);
+            att.buffer = bigger;
+        }
+
+        // Нуль-терминированная ASCII-строка имени копится в буфере с начала; каждый раз
+        // просматриваем только новые байты. Как только видим '\0', оформляем задачу.
+        private void readName(SelectionKey key, ClientAttachment att) throws IOException {
+            SocketChannel sc = (SocketChannel) key.channel();
+            ByteBuffer buf = att.buffer;
+            int nul = BatchProtocol.indexOfNul(buf, att.scanned, buf.limit());
+            if (nul < 0) {
+                if (buf.limit() > BatchProtocol.MAX_NAME) {
+                    // защита
+                    Log.warn("Name too long, closing {}", sc.getRemoteAddress());
+                    close(sc);
+                    return;
+                }
+                att.scanned = buf.limit();
+                if (buf.limit() == buf.capacity()) {
+                    // длинное имя: продолжаем в большом буфере
+                    att.buffer = large.take().put(buf.rewind());
+                    small.give(buf);
+                } else {
+                    buf.position(buf.limit()).limit(buf.capacity()); // дописываем следом
+                }
+                return;
+            }
+            if (nul > BatchProtocol.MAX_NAME) {
+                Log.warn("Name too long, closing {}", sc.getRemoteAddress());
+                close(sc);
+                return;
+            }
+            String name = BatchProtocol.decodeName(buf, 0, nul, nameScratch);
+            // буфер чтения больше не нужен: соединение ждёт ответ, читая только EOF в sink
+            att.named = true;
+            releaseBuffer(att);
+            Log.debug("Received name='{}' from {}", name, sc.getRemoteAddress());
+            long parsed = System.nanoTime();
+            metrics.readPhase.observeNanos(parsed - att.openedAt);
+
+            KeyServer.Waiter waiter = server.join(name, KeyServer.sourceOf(sc), false);
+            att.waiting.add(waiter);
+
+            // OP_READ оставляем: EOF до ответа значит, что клиент ушёл и ключ ему не нужен
+            waiter.future.whenComplete((kr, ex) -> {
+                readyWrites.add(new PendingWrite(key, -1, waiter, parsed, kr, ex));
+                selector.wakeup();
+            });
+        }
+
+        // Разбираем все целые кадры запросов; неполный хвост остаётся в буфере до следующего чтения.
+        // Если неотвеченных запросов набралось на окно, перестаём читать: клиент упрётся
+        // в окно TCP, а не в память сервера. Чтение возобновит registerReadyWrites.
+        private void readBatch(SelectionKey key, ClientAttachment att) throws IOException {
+            SocketChannel sc = (SocketChannel) key.channel();
+            ByteBuffer buf = att.buffer;
+            while (buf.remaining() >= BatchProtocol.REQUEST_HEADER) {
+                if (att.outstanding >= server.batchWindow()) {
+                    att.paused = true;
+                    key.interestOps(key.interestOps() & ~SelectionKey.OP_READ);
+                    break;
+                }
+                int id = buf.getInt(buf.position());
+                int len = buf.getInt(buf.position() + 4);
+                if (len < 0 || len > BatchProtocol.maxName(att.peer)) {
+                    Log.warn("Bad batch frame, closing {}", sc.getRemoteAddress());
+                    close(sc);
+                    return;
+                }
+                if (buf.remaining() < BatchProtocol.REQUEST_HEADER + len) break;
+                String name = BatchProtocol.decodeName(buf, buf.position() + BatchProtocol.REQUEST_HEADER, len, nameScratch);
+                buf.position(buf.position() + BatchProtocol.REQUEST_HEADER + len);
+                Log.debug("Received batch name='{}' id={} from {}", name, id, sc.getRemoteAddress());
+                long parsed = System.nanoTime();
+
+                att.outstanding++;
+                KeyServer.Waiter waiter = server.join(name, KeyServer.sourceOf(sc), att.peer);
+                att.waiting.add(waiter);
+                waiter.future.whenComplete((kr, ex) -> {
+                    readyWrites.add(new PendingWrite(key, id, waiter, parsed, kr, ex));
+                    selector.wakeup();
+                });
+            }
+            buf.compact();
+        }
+
+        // Включаем OP_WRITE для каналов, чьи ключи уже готовы.
+        private void registerReadyWrites() {
+            PendingWrite pw;
+            while ((pw = readyWrites.poll()) != null) {
+                SelectionKey key = pw.key;
+                SocketChannel sc = (SocketChannel) key.channel();
+                if (!key.isValid()) {
+                    close(sc);
+                    continue;
+                }
+                try {
+                    ClientAttachment att = (ClientAttachment) key.attachment();
+                    att.waiting.remove(pw.waiter);
+                    pw.waiter.release();
+                    metrics.waitPhase.observeSince(pw.since);
+                    if (att.batch) {
+                        // в пакетном режиме ошибка — это кадр-ответ, соединение живёт дальше
+                        att.outstanding--;
+                        Collections.addAll(att.out, BatchProtocol.response(pw.requestId, pw.record, pw.error, headers.take()));
+                        key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+                        doWrite(key);
+                        if (att.paused && key.isValid()) resumeBatch(key, att);
+                        continue;
+                    }
+                    if (pw.error instanceof ServerBusyException busy) {
+                        // перегрузка: отвечаем "повторите позже" и закрываем, как после обычного ответа
+                        att.response = BatchProtocol.legacyBusy(busy.retryAfterMs);
+                        key.interestOps(SelectionKey.OP_WRITE);
+                        doWrite(key);
+                        continue;
+                    }
+                    if (pw.error instanceof CancellationException) {
+                        close(sc); // клиент уже ушёл
+                        continue;
+                    }
+                    if (pw.error != null) {
+                        Log.debug("Generation failed for {}: {}", sc.getRemoteAddress(), pw.error);
+                        close(sc);
+                        continue;
+                    }
+                    att.response = pw.record.response();
+                    att.writeStartedAt = System.nanoTime();
+                    key.interestOps(SelectionKey.OP_WRITE);
+                    // чаще всего ответ целиком влезает в буфер сокета — пробуем сразу
+                    doWrite(key);
+                } catch (CancelledKeyException | IOException e) {
+                    close(sc);
+                }
+            }
+        }
+
+        // Окно освободилось — разбираем кадры, накопленные в буфере, и снова читаем сокет.
+        private void resumeBatch(SelectionKey key, ClientAttachment att) throws IOException {
+            att.paused = false;
+            key.interestOps(key.interestOps() | SelectionKey.OP_READ);
+            att.buffer.flip();
+            readBatch(key, att);
+        }
+
+        // Пишем столько, сколько принимает сокет; остаток допишем на следующем OP_WRITE.
+        private void doWrite(SelectionKey key) throws IOException {
+            SocketChannel sc = (SocketChannel) key.channel();
+            ClientAttachment att = (ClientAttachment) key.attachment();
+            if (att.batch) {
+                writeBatch(key, att);
+                return;
+            }
+            metrics.bytesSent.add(sc.write(att.response));
+            if (!att.response.hasRemaining()) {
+                if (att.writeStartedAt != 0) metrics.writePhase.observeSince(att.writeStartedAt);
+                Log.debug("Sent response to {}", sc.getRemoteAddress());
+                close(sc);
+            }
+        }
+
+        // Несколько готовых кадров уходят одним gathering write.
+        private void writeBatch(SelectionKey key, ClientAttachment att) throws IOException {
+            SocketChannel sc = (SocketChannel) key.channel();
+            ByteBuffer[] gather = new ByteBuffer[Math.min(att.out.size(), MAX_GATHER)];
+            Iterator<ByteBuffer> it = att.out.iterator();
+            for (int i = 0; i < gather.length; i++) gather[i] = it.next();
+            metrics.bytesSent.add(sc.write(gather));
+            while (!att.out.isEmpty() && !att.out.peek().hasRemaining()) headers.give(att.out.poll());
+            if (att.out.isEmpty()) {
+                key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+                closeIfDone(key);
+            }
+        }
+
+        private void closeIfDone(SelectionKey key) throws IOException {
+            ClientAttachment att = (ClientAttachment) key.attachment();
+            if (att.inputClosed && att.outstanding == 0 && att.out.isEmpty()) {
+                SocketChannel sc = (SocketChannel) key.channel();
+                Log.debug("Finished batch for {}", sc.getRemoteAddress());
+                close(sc);
+            }
+        }
+
+        private void close(SocketChannel sc) {
+            // ответы, которые соединение так и не дождалось, больше никому из нас не нужны
+            SelectionKey key = sc.keyFor(selector);
+            if (key != null && key.attachment() instanceof ClientAttachment att) {
+                att.releaseWaiting();
+                releaseBuffer(att);
+                ByteBuffer b;
+                while ((b = att.out.poll()) != null) headers.give(b);
+            }
+            if (sc.isOpen()) {
+                connections.decrementAndGet();
+                metrics.active.dec();
+            }
+            KeyServer.closeSilently(sc);
+        }
+
+        // Буфер чтения возвращается в свой пул ровно один раз.
+        private void releaseBuffer(ClientAttachment att) {
+            ByteBuffer b = att.buffer;
+            if (b == null) return;
+            att.buffer = null;
+            if (b.capacity() == SMALL_BUFFER) {
+                small.give(b);
+            } else {
+                large.give(b);
+            }
+        }
+    }
+
+    private static class ClientAttachment {
+        // буфер чтения из пула реактора; null, когда возвращён (имя получено или соединение закрыто)
+        ByteBuffer buffer;
+        // до какого места в buffer уже искали '\0'
+        int scanned;
+        // старый протокол: имя получено
+        boolean named;
+        ByteBuffer response;
+        // начало фаз read и write старого протокола, System.nanoTime()
+        final long openedAt = System.nanoTime();
+        long writeStartedAt;
+
+        boolean legacy;
+        boolean batch;
+        // пакетное соединение от другого узла кластера: имена не пересылаем
+        boolean peer;
+        // клиент сделал shutdownOutput — новых запросов не будет
+        boolean inputClosed;
+        // пакетные запросы, ответ на которые ещё не поставлен в очередь
+        int outstanding;
+        // чтение приостановлено: outstanding достиг окна
+        boolean paused;
+        final ArrayDeque<ByteBuffer> out = new ArrayDeque<>();
+        // имена, ответ на которые соединение ещё ждёт
+        final List<KeyServer.Waiter> waiting = new ArrayList<>();
+
+        ClientAttachment(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        void releaseWaiting() {
+            for (KeyServer.Waiter w : waiting) w.release();
+            waiting.clear();
+        }
+    }
+
+    private static class PendingWrite {
+        final SelectionKey key;
+        final int requestId; // -1 для старого протокола
+        final KeyServer.Waiter waiter;
+        final long since; // когда имя было разобрано — начало фазы wait
+        final KeyRecord record;
+        final Throwable error;
+        PendingWrite(SelectionKey k, int id, KeyServer.Waiter w, long t, KeyRecord r, Throwable e) { key = k; requestId = id; waiter = w; since = t; record = r; error = e; }
+    }
+}
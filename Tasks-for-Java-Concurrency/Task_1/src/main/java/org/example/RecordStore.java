@@ -0,0 +1,192 @@
+package org.example;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileAttribute;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+// Постоянное хранилище выданных ключей.
+// records.log — журнал только на дозапись: [int len имени][имя][int len ответа][ответ].
+// records.idx — компактный индекс: [int len имени][имя][long смещение ответа][int len ответа].
+// При старте индекс целиком читается через mmap, а тела записей — лениво, по запросу.
+class RecordStore implements AutoCloseable {
+    private static final String LOG_FILE = "records.log";
+    private static final String INDEX_FILE = "records.idx";
+    // в журнале лежат закрытые ключи — файлы доступны только владельцу
+    private static final Set<PosixFilePermission> OWNER_ONLY = PosixFilePermissions.fromString("rw-------");
+
+    private final FileChannel log;
+    private final FileChannel index;
+    private final Map<String, Location> locations = new HashMap<>();
+    // конец последней целой записи индекса; дописываем отсюда, а не с конца файла
+    private long indexEnd;
+
+    private record Location(long offset, int length) {}
+
+    RecordStore(Path dir) throws IOException {
+        Files.createDirectories(dir);
+        log = open(dir.resolve(LOG_FILE));
+        index = open(dir.resolve(INDEX_FILE));
+
+        long t0 = System.nanoTime();
+        long logEnd = loadIndex();
+        int recovered = recoverLogTail(logEnd);
+        long ms = (System.nanoTime() - t0) / 1_000_000;
+        Log.info("Record store {}: {} names indexed in {} ms{}", dir, locations.size(), ms,
+                recovered > 0 ? " (" + recovered + " recovered from log)" : "");
+    }
+
+    // Новый файл сразу создаётся с правами rw-------, у оставшегося от прежних версий права
+    // урезаются. На файловых системах без POSIX-прав (Windows) — права по умолчанию.
+    private static FileChannel open(Path file) throws IOException {
+        Set<OpenOption> opts = Set.of(StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        if (!file.getFileSystem().supportedFileAttributeViews().contains("posix")) {
+            return FileChannel.open(file, opts);
+        }
+        FileAttribute<Set<PosixFilePermission>> attr = PosixFilePermissions.asFileAttribute(OWNER_ONLY);
+        FileChannel ch = FileChannel.open(file, opts, attr);
+        Files.setPosixFilePermissions(file, OWNER_ONLY);
+        return ch;
+    }
+
+    // Читаем индекс через mmap. Недописанный хвост (падение посреди записи) не отрезаем:
+    // файл с живым отображением на Windows укоротить нельзя, а снять отображение явно Java не
+    // даёт. Вместо этого хвост затираем байтами 0xFF (длина имени -1 — конец индекса при
+    // следующей загрузке) и дописываем поверх него, с indexEnd.
+    // Возвращаем конец последней проиндексированной записи журнала.
+    private long loadIndex() throws IOException {
+        long size = index.size();
+        long logSize = log.size();
+        long logEnd = 0;
+        if (size == 0) return 0;
+
+        MappedByteBuffer map = index.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        int valid = 0;
+        while (map.remaining() >= 4) {
+            int nameLen = map.getInt(map.position());
+            if (nameLen < 0 || map.remaining() < 4 + nameLen + 12) break;
+            map.getInt();
+            byte[] nameBytes = new byte[nameLen];
+            map.get(nameBytes);
+            long offset = map.getLong();
+            int length = map.getInt();
+            // отрицательные поля — запись, недописанная поверх хвоста из 0xFF
+            if (offset < 0 || length < 0) break;
+            if (offset > logSize - length) break; // индекс опередил журнал
+            locations.put(new String(nameBytes, StandardCharsets.US_ASCII), new Location(offset, length));
+            logEnd = Math.max(logEnd, offset + length);
+            valid = map.position();
+        }
+        indexEnd = valid;
+        if (valid < size) {
+            byte[] poison = new byte[(int) (size - valid)];
+            Arrays.fill(poison, (byte) 0xFF);
+            writeFully(index, new ByteBuffer[]{ByteBuffer.wrap(poison)}, valid);
+        }
+        return logEnd;
+    }
+
+    // Записи, попавшие в журнал, но не успевшие в индекс, дописываем в индекс.
+    private int recoverLogTail(long from) throws IOException {
+        long size = log.size();
+        long pos = from;
+        int recovered = 0;
+        ByteBuffer len = ByteBuffer.allocate(4);
+        while (pos + 4 <= size) {
+            int nameLen = readInt(len, pos);
+            if (nameLen < 0 || pos + 4 + nameLen + 4 > size) break;
+            ByteBuffer nameBuf = ByteBuffer.allocate(nameLen);
+            readFully(nameBuf, pos + 4);
+            long respPos = pos + 4 + nameLen + 4;
+            int respLen = readInt(len, pos + 4 + nameLen);
+            if (respLen < 0 || respPos + respLen > size) break;
+            String name = new String(nameBuf.array(), StandardCharsets.US_ASCII);
+            appendIndex(name, respPos, respLen);
+            locations.put(name, new Location(respPos, respLen));
+            pos = respPos + respLen;
+            recovered++;
+        }
+        if (pos < size) log.truncate(pos);
+        return recovered;
+    }
+
+    synchronized boolean contains(String name) {
+        return locations.containsKey(name);
+    }
+
+    // Тело записи читаем только когда имя действительно запросили.
+    KeyRecord load(String name) throws IOException, GeneralSecurityException {
+        Location loc;
+        synchronized (this) {
+            loc = locations.get(name);
+        }
+        if (loc == null) return null;
+        ByteBuffer framed = ByteBuffer.allocateDirect(loc.length);
+        readFully(framed, loc.offset);
+        return KeyRecord.fromResponse(framed.flip());
+    }
+
+    // Сначала журнал, затем индекс: после падения между ними запись восстановится из журнала.
+    // Повторная запись того же имени (перевыпуск) перекрывает прежнюю: при загрузке побеждает последняя.
+    synchronized void append(String name, KeyRecord kr) throws IOException {
+        byte[] nameBytes = name.getBytes(StandardCharsets.US_ASCII);
+        ByteBuffer resp = kr.response();
+        long start = log.size();
+        long respPos = start + 4 + nameBytes.length + 4;
+        ByteBuffer header = ByteBuffer.allocate(8 + nameBytes.length);
+        header.putInt(nameBytes.length).put(nameBytes).putInt(resp.remaining()).flip();
+        int respLen = resp.remaining();
+        writeFully(log, new ByteBuffer[]{header, resp}, start);
+        log.force(false);
+        appendIndex(name, respPos, respLen);
+        locations.put(name, new Location(respPos, respLen));
+    }
+
+    private void appendIndex(String name, long offset, int length) throws IOException {
+        byte[] nameBytes = name.getBytes(StandardCharsets.US_ASCII);
+        ByteBuffer entry = ByteBuffer.allocate(4 + nameBytes.length + 12);
+        entry.putInt(nameBytes.length).put(nameBytes).putLong(offset).putInt(length).flip();
+        writeFully(index, new ByteBuffer[]{entry}, indexEnd);
+        indexEnd += entry.capacity();
+    }
+
+    private int readInt(ByteBuffer buf, long pos) throws IOException {
+        buf.clear();
+        readFully(buf, pos);
+        return buf.getInt(0);
+    }
+
+    private void readFully(ByteBuffer buf, long pos) throws IOException {
+        while (buf.hasRemaining()) {
+            int n = log.read(buf, pos);
+            if (n < 0) throw new IOException("Unexpected end of " + LOG_FILE);
+            pos += n;
+        }
+    }
+
+    private static void writeFully(FileChannel ch, ByteBuffer[] bufs, long pos) throws IOException {
+        ch.position(pos);
+        while (bufs[bufs.length - 1].hasRemaining()) ch.write(bufs);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        index.force(true);
+        log.force(true);
+        index.close();
+        log.close();
+    }
+}
@@ -0,0 +1,16 @@
+package org.example;
+
+import java.io.IOException;
+
+// Сервер перегружен и не принял имя в очередь генерации; клиенту стоит повторить запрос
+// не раньше чем через retryAfterMs. По сети передаётся отдельным кадром (см. BatchProtocol).
+class ServerBusyException extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    final long retryAfterMs;
+
+    ServerBusyException(long retryAfterMs) {
+        super("Server busy, retry after " + retryAfterMs + " ms");
+        this.retryAfterMs = retryAfterMs;
+    }
+}
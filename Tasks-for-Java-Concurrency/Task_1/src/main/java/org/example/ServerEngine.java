@@ -0,0 +1,19 @@
+package org.example;
+
+import java.io.IOException;
+import java.nio.channels.ServerSocketChannel;
+
+// Сетевая часть KeyServer. Движки обслуживают один и тот же протокол поверх общего реестра
+// имён и пула генерации, поэтому клиенту (и генератору нагрузки) всё равно, какой из них запущен.
+interface ServerEngine {
+    // Обслуживает уже привязанный сокет; блокирует, пока сервер работает.
+    void serve(ServerSocketChannel ssc) throws IOException;
+
+    // Перестать принимать соединения: serve() возвращается, открытые соединения живут дальше.
+    void stopAccepting();
+
+    // Закрыть оставшиеся соединения и потоки движка — после дренажа или по его таймауту.
+    void close();
+
+    String describe();
+}
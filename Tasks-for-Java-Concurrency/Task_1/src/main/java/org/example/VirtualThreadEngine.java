@@ -0,0 +1,239 @@
+package org.example;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.PushbackInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousCloseException;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Движок "поток на соединение": блокирующие сокеты, каждый клиент в своём виртуальном потоке.
+// Прочитать имя, дождаться ключа, записать ответ — обычный последовательный код.
+class VirtualThreadEngine implements ServerEngine {
+    private final KeyServer server;
+    private final Metrics metrics;
+    private final ExecutorService exec = Executors.newVirtualThreadPerTaskExecutor();
+    private volatile ServerSocketChannel listening;
+
+    VirtualThreadEngine(KeyServer server) {
+        this.server = server;
+        this.metrics = server.metrics();
+    }
+
+    @Override
+    public String describe() {
+        return "virtual-thread engine";
+    }
+
+    @Override
+    public void serve(ServerSocketChannel ssc) throws IOException {
+        ssc.configureBlocking(true);
+        listening = ssc;
+        try {
+            while (server.isRunning()) {
+                SocketChannel sc = ssc.accept();
+                metrics.accepted.inc();
+                metrics.active.inc();
+                exec.submit(() -> handle(sc));
+            }
+        } catch (AsynchronousCloseException e) {
+            // сокет закрыт при остановке сервера
+        }
+    }
+
+    // Блокирующий accept() будит только закрытие слушающего сокета.
+    @Override
+    public void stopAccepting() {
+        ServerSocketChannel ssc = listening;
+        try {
+            if (ssc != null) ssc.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    // Прерывание виртуального потока закрывает его канал, так что зависшие соединения
+    // разрываются, а их обработчики выходят через finally.
+    @Override
+    public void close() {
+        exec.shutdownNow();
+    }
+
+    private void handle(SocketChannel sc) {
+        long opened = System.nanoTime();
+        try {
+            Log.debug("Accepted connection from {}", sc.getRemoteAddress());
+            ByteBuffer buf = ByteBuffer.allocate(BatchProtocol.MAX_NAME + 1);
+            if (sc.read(buf) < 0) return;
+            if (BatchProtocol.startsBatch(buf.get(0))) {
+                serveBatch(sc, buf.flip());
+                return;
+            }
+            String name = readName(sc, buf);
+            if (name == null) return;
+            Log.debug("Received name='{}' from {}", name, sc.getRemoteAddress());
+            long parsed = System.nanoTime();
+            metrics.readPhase.observeNanos(parsed - opened);
+
+            KeyServer.Waiter waiter = server.join(name, KeyServer.sourceOf(sc), false);
+            // пока этот поток ждёт ключ, соседний следит за сокетом: EOF — клиент ушёл
+            Thread.ofVirtual().start(() -> watchDisconnect(sc, waiter));
+
+            // виртуальный поток паркуется здесь, не занимая поток-носитель
+            ByteBuffer response;
+            try {
+                response = waiter.future.get().response();
+            } catch (ExecutionException ee) {
+                if (!(ee.getCause() instanceof ServerBusyException busy)) throw ee;
+                response = BatchProtocol.legacyBusy(busy.retryAfterMs);
+            } finally {
+                waiter.release();
+            }
+            long ready = System.nanoTime();
+            metrics.waitPhase.observeNanos(ready - parsed);
+            while (response.hasRemaining()) metrics.bytesSent.add(sc.write(response));
+            metrics.writePhase.observeSince(ready);
+            Log.debug("Sent response to {}", sc.getRemoteAddress());
+        } catch (ExecutionException ee) {
+            Log.debug("Generation failed: {}", ee.getCause());
+        } catch (CancellationException ce) {
+            // все ждавшие клиенты ушли, отвечать некому
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        } catch (IOException ignored) {
+            // клиент закрыл соединение
+        } finally {
+            metrics.active.dec();
+            KeyServer.closeSilently(sc);
+        }
+    }
+
+    // Пакетный режим: этот поток читает кадры запросов, а на каждый запрос заводится свой
+    // виртуальный поток, который ждёт ключ и пишет кадр ответа, как только тот готов.
+    private void serveBatch(SocketChannel sc, ByteBuffer alreadyRead) throws IOException {
+        // уже прочитанные байты возвращаем в поток; SequenceInputStream здесь не годится —
+        // на EOF он закрыл бы канал, а после shutdownOutput клиента мы ещё пишем ответы
+        PushbackInputStream pushback = new PushbackInputStream(Channels.newInputStream(sc), alreadyRead.limit());
+        pushback.unread(alreadyRead.array(), 0, alreadyRead.limit());
+        DataInputStream in = new DataInputStream(pushback);
+        byte[] magic = new byte[BatchProtocol.MAGIC.length];
+        in.readFully(magic);
+        boolean peer = Arrays.equals(magic, BatchProtocol.PEER_MAGIC);
+        if (!peer && !Arrays.equals(magic, BatchProtocol.MAGIC)) return;
+        if (peer && !server.acceptsPeer(sc)) {
+            Log.warn("Peer handshake from a node not in --peers, closing {}", sc.getRemoteAddress());
+            return;
+        }
+
+        ReentrantLock writeLock = new ReentrantLock();
+        // ответы, которые соединение ещё ждёт; при обрыве отпускаем их все
+        Set<KeyServer.Waiter> waiting = ConcurrentHashMap.newKeySet();
+        // окно неотвеченных запросов: пока оно занято, новые кадры не читаем
+        Semaphore window = new Semaphore(server.batchWindow());
+        // close() дождётся всех ответов, прежде чем соединение будет закрыто
+        try (ExecutorService waiters = Executors.newVirtualThreadPerTaskExecutor()) {
+            while (true) {
+                int id;
+                try {
+                    id = in.readInt();
+                } catch (EOFException eof) {
+                    break; // клиент закончил слать запросы
+                }
+                int len = in.readInt();
+                if (len < 0 || len > BatchProtocol.maxName(peer)) {
+                    Log.warn("Bad batch frame from {}", sc.getRemoteAddress());
+                    break;
+                }
+                byte[] nameBytes = new byte[len];
+                in.readFully(nameBytes);
+                String name = new String(nameBytes, StandardCharsets.US_ASCII);
+                Log.debug("Received batch name='{}' id={} from {}", name, id, sc.getRemoteAddress());
+
+                try {
+                    window.acquire();
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+                KeyServer.Waiter waiter = server.join(name, KeyServer.sourceOf(sc), peer);
+                waiting.add(waiter);
+                long parsed = System.nanoTime();
+                waiters.submit(() -> {
+                    try {
+                        ByteBuffer[] frame;
+                        try {
+                            frame = BatchProtocol.ok(id, waiter.future.get());
+                        } catch (ExecutionException ee) {
+                            frame = BatchProtocol.response(id, null, ee.getCause());
+                        } catch (CancellationException ce) {
+                            frame = BatchProtocol.response(id, null, ce);
+                        }
+                        waiting.remove(waiter);
+                        waiter.release();
+                        metrics.waitPhase.observeSince(parsed);
+                        writeLock.lock();
+                        try {
+                            while (frame[frame.length - 1].hasRemaining()) metrics.bytesSent.add(sc.write(frame));
+                        } finally {
+                            writeLock.unlock();
+                        }
+                    } catch (IOException e) {
+                        releaseAll(waiting); // запись не прошла — клиент отключился
+                        throw e;
+                    } finally {
+                        window.release();
+                    }
+                    return null;
+                });
+            }
+        } catch (IOException e) {
+            releaseAll(waiting);
+            throw e;
+        }
+        Log.debug("Finished batch for {}", sc.getRemoteAddress());
+    }
+
+    // Клиент старого протокола после имени ничего не шлёт, поэтому чтение вернёт -1 (или
+    // ошибку), только если он отключился; закрытие сокета после ответа тоже будит этот поток.
+    private static void watchDisconnect(SocketChannel sc, KeyServer.Waiter waiter) {
+        ByteBuffer sink = ByteBuffer.allocate(64);
+        try {
+            while (sc.read(sink.clear()) >= 0) {
+                // лишние байты после имени игнорируем
+            }
+        } catch (IOException ignored) {
+        }
+        waiter.release();
+    }
+
+    private static void releaseAll(Set<KeyServer.Waiter> waiting) {
+        for (KeyServer.Waiter w : waiting) w.release();
+        waiting.clear();
+    }
+
+    // Нуль-терминированное ASCII-имя; null — если клиент отключился раньше или имя слишком длинное.
+    private static String readName(SocketChannel sc, ByteBuffer buf) throws IOException {
+        int scanned = 0;
+        while (true) {
+            int nul = BatchProtocol.indexOfNul(buf, scanned, buf.position());
+            if (nul >= 0) return new String(buf.array(), 0, nul, StandardCharsets.US_ASCII);
+            scanned = buf.position();
+            if (!buf.hasRemaining()) break;
+            if (sc.read(buf) < 0) return null;
+        }
+        Log.warn("Name too long, closing {}", sc.getRemoteAddress());
+        return null;
+    }
+}
@@ -0,0 +1,81 @@
+package org.example;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Разбор ответа узла с большим массивом successors, без сети. Тело нарезано кусками по 16 КиБ,
+// как их отдаёт HttpClient. regex — прежний путь (BodyHandlers.ofString и три регулярки),
+// streaming — NodeParser по кускам. Аллокации: -prof gc.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class NodeParsingBenchmark {
+    private static final int CHUNK = 16 * 1024;
+
+    // прежние шаблоны Spider
+    private static final Pattern MESSAGE_PATTERN = Pattern.compile("\"message\"\\s*:\\s*\"([^\"]*)\"");
+    private static final Pattern SUCCESSORS_ARRAY_PATTERN = Pattern.compile("\"successors\"\\s*:\\s*\\[(.*)\\]", Pattern.DOTALL);
+    private static final Pattern QUOTED_STRING_PATTERN = Pattern.compile("\"([^\"]*)\"");
+
+    @Param({"100", "10000"})
+    public int successors;
+
+    private List<ByteBuffer> chunks;
+
+    @Setup
+    public void setup() {
+        StringBuilder sb = new StringBuilder("{\"message\": \"node message\", \"successors\": [");
+        for (int i = 0; i < successors; i++) {
+            if (i > 0) sb.append(", ");
+            sb.append("\"/node/").append(i).append("/child\"");
+        }
+        byte[] body = sb.append("]}").toString().getBytes(StandardCharsets.UTF_8);
+        chunks = new ArrayList<>();
+        for (int off = 0; off < body.length; off += CHUNK) {
+            chunks.add(ByteBuffer.wrap(body, off, Math.min(CHUNK, body.length - off)).slice());
+        }
+    }
+
+    @Benchmark
+    public void regex(Blackhole bh) {
+        // ofString: собрать куски в один массив и декодировать
+        int total = 0;
+        for (ByteBuffer c : chunks) total += c.remaining();
+        byte[] all = new byte[total];
+        int off = 0;
+        for (ByteBuffer c : chunks) {
+            c.duplicate().get(all, off, c.remaining());
+            off += c.remaining();
+        }
+        String json = new String(all, StandardCharsets.UTF_8);
+        Matcher m = MESSAGE_PATTERN.matcher(json);
+        if (m.find()) bh.consume(m.group(1));
+        Matcher arrayMatcher = SUCCESSORS_ARRAY_PATTERN.matcher(json);
+        if (arrayMatcher.find()) {
+            Matcher q = QUOTED_STRING_PATTERN.matcher(arrayMatcher.group(1));
+            while (q.find()) bh.consume(q.group(1));
+        }
+    }
+
+    @Benchmark
+    public void streaming(Blackhole bh) {
+        NodeParser parser = new NodeParser(bh::consume, bh::consume);
+        for (ByteBuffer c : chunks) parser.feed(c);
+        parser.finish();
+    }
+}
@@ -0,0 +1,48 @@
+package org.example;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+// Время одного add в каждую реализацию VisitedSet: заполнение пустого множества PATHS путями
+// и повторный проход по тем же путям (дубликаты — преемники, которые уже видели). Строки
+// готовы заранее, так что меряется само множество. Память на путь — VisitedSetFootprint.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class VisitedSetBenchmark {
+    private static final int PATHS = 1 << 20;
+
+    @Param({"heap", "fingerprint", "bloom"})
+    public String kind;
+
+    private String[] paths;
+
+    @Setup
+    public void setup() {
+        paths = new String[PATHS];
+        for (int i = 0; i < PATHS; i++) paths[i] = VisitedSetFootprint.path(i);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(2 * PATHS)
+    public long insertThenRevisit() {
+        VisitedSet set = VisitedSet.create(kind, PATHS);
+        long added = 0;
+        for (String p : paths) {
+            if (set.add(p)) added++;
+        }
+        for (String p : paths) {
+            if (set.add(p)) added++;
+        }
+        return added;
+    }
+}
@@ -0,0 +1,41 @@
+package org.example;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+// Фильтр Блума по готовому 128-битному отпечатку: K индексов h1 + i·h2 (Kirsch–Mitzenmacher),
+// ~10 бит на элемент и ~1% ложных "возможно есть" при заполнении до expected.
+// Биты ставятся атомарным OR, так что put можно звать из разных потоков одновременно.
+final class BloomFilter {
+    private static final int K = 7;
+    private static final VarHandle WORDS = MethodHandles.arrayElementVarHandle(long[].class);
+
+    private final long[] words;
+    private final long mask;
+
+    BloomFilter(long expected) {
+        // m = -n·ln(p) / ln(2)^2 при p = 1%, вверх до степени двойки
+        long bits = (long) Math.ceil(expected * 9.6);
+        long size = Long.highestOneBit(Math.max(64, bits - 1)) << 1;
+        // размер — степень двойки, а long[] не длиннее 2^31 - 1: больше 2^30 слов (2^36 бит) нельзя
+        size = Math.min(size, 1L << 36);
+        this.words = new long[(int) (size >>> 6)];
+        this.mask = size - 1;
+    }
+
+    // Поставить биты отпечатка; true — хоть один был снят, то есть отпечатка раньше точно не было.
+    boolean put(long h1, long h2) {
+        boolean changed = false;
+        for (int i = 0; i < K; i++) {
+            long bit = (h1 + i * h2) & mask;
+            long m = 1L << bit;
+            long old = (long) WORDS.getAndBitwiseOr(words, (int) (bit >>> 6), m);
+            if ((old & m) == 0) changed = true;
+        }
+        return changed;
+    }
+
+    long bytes() {
+        return words.length * 8L;
+    }
+}
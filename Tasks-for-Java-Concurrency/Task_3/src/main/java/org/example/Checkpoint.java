@@ -0,0 +1,175 @@
+package org.example;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+// Журнал обхода, только на дописывание. По строке на событие:
+//   V<путь>      путь найден и поставлен в обход
+//   D<путь>      путь получен, его сообщение и преемники уже записаны выше
+//   M<сообщение> новое сообщение
+// События копятся в памяти и дописываются пачкой при flush (раз в --checkpoint-seconds и при
+// выходе), так что kill -9 теряет не больше одного интервала. Порядок событий сохраняется:
+// D пути всегда после V его преемников, поэтому фронтир (V без D) после чтения полон.
+// Оборванная последняя строка (процесс убит посреди записи) при чтении отбрасывается.
+final class Checkpoint implements AutoCloseable {
+    private final Path file;
+    private final ConcurrentLinkedQueue<String> unsaved = new ConcurrentLinkedQueue<>();
+    private FileChannel channel;
+
+    // состояние, прочитанное из журнала
+    static final class State {
+        final Set<String> visited = new LinkedHashSet<>();
+        final Set<String> done = new HashSet<>();
+        final List<String> messages = new ArrayList<>();
+
+        // найденные, но ещё не полученные пути — с них продолжается обход
+        List<String> frontier() {
+            List<String> out = new ArrayList<>();
+            for (String p : visited) {
+                if (!done.contains(p)) out.add(p);
+            }
+            return out;
+        }
+    }
+
+    Checkpoint(Path file) {
+        this.file = file;
+    }
+
+    // Прочитать журнал и переписать его в сжатом виде (D для полученных, V для фронтира, M),
+    // заодно избавившись от оборванного хвоста. Нет файла — пустое состояние.
+    State resume() throws IOException {
+        State state = new State();
+        if (Files.exists(file)) {
+            // строка применяется, только когда за ней прочитана следующая: последнюю надо
+            // сначала проверить на обрыв
+            String last = null;
+            try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = in.readLine()) != null) {
+                    if (line.isEmpty()) continue;
+                    if (last != null) apply(state, last);
+                    last = line;
+                }
+            }
+            // readLine отдаёт и строку без перевода строки в конце: она оборвалась, её событие
+            // считаем несостоявшимся и не применяем вовсе — обрезок "V/ab" от "V/abc" не должен
+            // задеть уже записанный путь "/ab". Путь без D просто будет получен ещё раз, а
+            // потерянное V восстановится, когда заново пройдёт его родитель
+            if (last != null && endsWithNewline()) apply(state, last);
+        }
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (BufferedWriter out = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+            for (String p : state.done) out.write(line('D', p));
+            for (String p : state.frontier()) out.write(line('V', p));
+            for (String m : state.messages) out.write(line('M', m));
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        open(false);
+        return state;
+    }
+
+    // Начать журнал заново.
+    void start() throws IOException {
+        open(true);
+    }
+
+    private void open(boolean truncate) throws IOException {
+        channel = truncate
+                ? FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)
+                : FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    private static void apply(State state, String line) {
+        String text = decode(line.substring(1));
+        switch (line.charAt(0)) {
+            case 'V' -> state.visited.add(text);
+            case 'D' -> {
+                state.visited.add(text);
+                state.done.add(text);
+            }
+            case 'M' -> state.messages.add(text);
+            default -> { } // мусор от оборванной записи
+        }
+    }
+
+    private boolean endsWithNewline() throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer last = ByteBuffer.allocate(1);
+            return ch.size() == 0 || (ch.read(last, ch.size() - 1) == 1 && last.get(0) == '\n');
+        }
+    }
+
+    void visited(String path) {
+        unsaved.add(line('V', path));
+    }
+
+    void done(String path) {
+        unsaved.add(line('D', path));
+    }
+
+    void message(String message) {
+        unsaved.add(line('M', message));
+    }
+
+    // Дописать накопленные события и сбросить их на диск.
+    synchronized void flush() throws IOException {
+        if (channel == null || unsaved.isEmpty()) return;
+        StringBuilder sb = new StringBuilder();
+        String s;
+        while ((s = unsaved.poll()) != null) sb.append(s);
+        ByteBuffer buf = StandardCharsets.UTF_8.encode(sb.toString());
+        while (buf.hasRemaining()) channel.write(buf);
+        channel.force(false);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (channel == null) return;
+        try {
+            flush();
+        } finally {
+            channel.close();
+            channel = null;
+        }
+    }
+
+    private static String line(char type, String text) {
+        return type + encode(text) + "\n";
+    }
+
+    // перевод строки и '\' в путях и сообщениях не должны ломать построчный формат
+    private static String encode(String s) {
+        if (s.indexOf('\\') < 0 && s.indexOf('\n') < 0 && s.indexOf('\r') < 0) return s;
+        return s.replace("\\", "\\\\").replace("\n", "\\n").replace("\r", "\\r");
+    }
+
+    private static String decode(String s) {
+        if (s.indexOf('\\') < 0) return s;
+        StringBuilder out = new StringBuilder(s.length());
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '\\' && i + 1 < s.length()) {
+                char e = s.charAt(++i);
+                out.append(e == 'n' ? '\n' : e == 'r' ? '\r' : e);
+            } else {
+                out.append(c);
+            }
+        }
+        return out.toString();
+    }
+}
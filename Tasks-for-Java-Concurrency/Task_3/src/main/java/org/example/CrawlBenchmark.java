@@ -0,0 +1,100 @@
+package org.example;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.Arrays;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Полный обход MockGraphServer в этом же процессе: узлов в секунду, время до конца и пик кучи,
+// чтобы ловить регрессии скорости обхода без внешнего сервиса. Ключи графа — как у
+// MockGraphServer, ключи обхода — как у Spider (--limit, --visited, ...); --runs прогонов,
+// первый из них — прогрев и в медиану не входит.
+//
+// Пик кучи — максимум занятой кучи по опросу раз в 5 мс; в него входит и сервер, но его
+// доля от размера графа не зависит (узлы не хранятся).
+class CrawlBenchmark {
+    public static void main(String[] args) throws Exception {
+        MockGraphServer.Options graph = new MockGraphServer.Options();
+        graph.port = 0; // свободный порт
+        Spider.Options crawl = new Spider.Options();
+        crawl.timeoutSeconds = 0;
+        int runs = 4;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--runs")) {
+                runs = Integer.parseInt(args[++i]);
+                continue;
+            }
+            int last = MockGraphServer.parseOption(args, i, graph);
+            if (last < 0) last = Spider.parseOption(args, i, crawl);
+            if (last < 0) {
+                System.err.println("Unknown arg " + args[i]);
+                System.exit(1);
+            }
+            i = last;
+        }
+
+        PrintStream out = System.out;
+        // Spider печатает все сообщения в stdout — здесь это только мешает
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+
+        double[] rates = new double[Math.max(0, runs - 1)];
+        try (MockGraphServer server = new MockGraphServer(graph)) {
+            server.start();
+            out.printf("graph: %d nodes, depth=%d fanout=%d cycles=%.2f latency=%s %.1fms errors=%.3f body=%dB%n",
+                    server.nodes(), graph.depth, graph.fanout, graph.cycles, graph.latency, graph.latencyMs,
+                    graph.errorRate, graph.bodyBytes);
+            for (int run = 0; run < runs; run++) {
+                long served0 = server.served();
+                long errors0 = server.errors();
+                System.gc();
+                HeapPeak peak = new HeapPeak();
+                long t0 = System.nanoTime();
+                Spider spider = new Spider("localhost", server.port(), crawl);
+                spider.start();
+                double seconds = (System.nanoTime() - t0) / 1e9;
+                long peakBytes = peak.stop();
+                long fetched = server.served() - served0;
+                double rate = fetched / seconds;
+                out.printf("run %d%s: %.2f s, %d/%d messages, %d fetched, %d errors, %.0f nodes/s, peak heap %d MiB%n",
+                        run + 1, run == 0 ? " (warm-up)" : "", seconds, spider.messageCount(), server.nodes(),
+                        fetched, server.errors() - errors0, rate, peakBytes >> 20);
+                if (run > 0) rates[run - 1] = rate;
+            }
+            if (rates.length > 0) {
+                Arrays.sort(rates);
+                out.printf("median %.0f nodes/s, server peak concurrency %d%n", rates[rates.length / 2], server.peakInFlight());
+            }
+        }
+        System.exit(0);
+    }
+
+    // максимум занятой кучи, пока не позвали stop
+    private static final class HeapPeak {
+        private final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        private final AtomicLong max = new AtomicLong();
+        private final ScheduledExecutorService sampler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "heap-sampler");
+            t.setDaemon(true);
+            return t;
+        });
+
+        HeapPeak() {
+            sampler.scheduleAtFixedRate(this::sample, 0, 5, TimeUnit.MILLISECONDS);
+        }
+
+        private void sample() {
+            max.accumulateAndGet(memory.getHeapMemoryUsage().getUsed(), Math::max);
+        }
+
+        long stop() {
+            sampler.shutdownNow();
+            sample();
+            return max.get();
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package org.example;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Точное множество путей по 128-битным отпечаткам (MurmurHash3 x64/128 от символов пути),
+// хранимым вне кучи: 16 байт на слот, при заполнении до 3/4 — в среднем ~21-32 байта на путь
+// против ~100+ байт на строку с узлом ConcurrentHashMap. Ложное совпадение двух разных путей
+// при N путях имеет вероятность порядка N²/2^129 — для миллиардов путей это ~1e-21.
+//
+// Таблица разбита на SEGMENTS сегментов с открытой адресацией (линейное пробирование), каждый
+// под своим замком, так что add атомарен так же, как ConcurrentHashMap.add. Direct-буфер
+// одного сегмента не больше 1 ГиБ, вместе — до ~3·10^9 путей.
+//
+// С bloom == true перед таблицей стоит фильтр Блума. Его биты для путей сегмента ставятся под
+// замком этого сегмента, поэтому "точно нет" от фильтра под замком окончательно: такой путь
+// вставляется в первый пустой слот без сравнения отпечатков по цепочке.
+final class FingerprintSet implements VisitedSet {
+    private static final int SEGMENTS = 64;
+    private static final int MIN_SLOTS = 1024;
+    private static final int MAX_SLOTS = 1 << 26; // 1 ГиБ на сегмент
+
+    private final Segment[] segments = new Segment[SEGMENTS];
+    private final BloomFilter bloom;
+    private final AtomicLong size = new AtomicLong();
+
+    FingerprintSet(long expected, boolean bloom) {
+        long perSegment = Math.max(1, expected / SEGMENTS);
+        int slots = MIN_SLOTS;
+        while (slots < MAX_SLOTS && slots * 3L / 4 < perSegment) slots <<= 1;
+        for (int i = 0; i < SEGMENTS; i++) segments[i] = new Segment(slots);
+        this.bloom = bloom ? new BloomFilter(Math.max(expected, (long) MIN_SLOTS * SEGMENTS)) : null;
+    }
+
+    // MurmurHash3 x64/128 по UTF-16 символам пути (8 символов на 128-битный блок), без
+    // копирования в байты
+    @Override
+    public boolean add(String path) {
+        final long c1 = 0x87c37b91114253d5L;
+        final long c2 = 0x4cf5ad432745937fL;
+        long h1 = 0;
+        long h2 = 0;
+        int n = path.length();
+        int i = 0;
+        for (; i + 8 <= n; i += 8) {
+            long k1 = pack(path, i);
+            long k2 = pack(path, i + 4);
+            k1 *= c1; k1 = Long.rotateLeft(k1, 31); k1 *= c2; h1 ^= k1;
+            h1 = Long.rotateLeft(h1, 27); h1 += h2; h1 = h1 * 5 + 0x52dce729;
+            k2 *= c2; k2 = Long.rotateLeft(k2, 33); k2 *= c1; h2 ^= k2;
+            h2 = Long.rotateLeft(h2, 31); h2 += h1; h2 = h2 * 5 + 0x38495ab5;
+        }
+        long k1 = 0;
+        long k2 = 0;
+        for (int j = n - 1; j >= i; j--) {
+            int p = j - i;
+            if (p >= 4) k2 |= (long) path.charAt(j) << ((p - 4) * 16);
+            else k1 |= (long) path.charAt(j) << (p * 16);
+        }
+        if (k2 != 0) { k2 *= c2; k2 = Long.rotateLeft(k2, 33); k2 *= c1; h2 ^= k2; }
+        if (k1 != 0) { k1 *= c1; k1 = Long.rotateLeft(k1, 31); k1 *= c2; h1 ^= k1; }
+        h1 ^= n * 2L;
+        h2 ^= n * 2L;
+        h1 += h2;
+        h2 += h1;
+        h1 = fmix(h1);
+        h2 = fmix(h2);
+        h1 += h2;
+        h2 += h1;
+
+        // пустой слот — нули; такой отпечаток сдвигаем, вероятность 2^-128
+        if (h1 == 0 && h2 == 0) h1 = 1;
+        // сегмент — по старшим битам h2, слот — по h1: биты не пересекаются
+        Segment s = segments[(int) (h2 >>> 58)];
+        if (!s.add(h1, h2)) return false;
+        size.incrementAndGet();
+        return true;
+    }
+
+    @Override
+    public long size() {
+        return size.get();
+    }
+
+    // байт под таблицу (вне кучи) и фильтр (в куче)
+    long footprintBytes() {
+        long sum = 0;
+        for (Segment s : segments) sum += s.bytes();
+        return sum + (bloom != null ? bloom.bytes() : 0);
+    }
+
+    private final class Segment {
+        private ByteBuffer table;
+        private int mask;
+        private int count;
+
+        Segment(int slots) {
+            allocate(slots);
+        }
+
+        private void allocate(int slots) {
+            table = ByteBuffer.allocateDirect(slots * 16).order(ByteOrder.nativeOrder());
+            mask = slots - 1;
+        }
+
+        synchronized long bytes() {
+            return table.capacity();
+        }
+
+        synchronized boolean add(long h1, long h2) {
+            // последний пустой слот не отдаём: на нём заканчивается пробирование
+            if (count == mask) throw new IllegalStateException("Visited set segment is full");
+            boolean absent = bloom != null && bloom.put(h1, h2);
+            int i = (int) h1 & mask;
+            while (true) {
+                int at = i * 16;
+                long a = table.getLong(at);
+                long b = table.getLong(at + 8);
+                if (a == 0 && b == 0) break;
+                if (!absent && a == h1 && b == h2) return false;
+                i = (i + 1) & mask;
+            }
+            table.putLong(i * 16, h1);
+            table.putLong(i * 16 + 8, h2);
+            if (++count > (mask + 1) * 3L / 4 && mask + 1 < MAX_SLOTS) grow();
+            return true;
+        }
+
+        private void grow() {
+            ByteBuffer old = table;
+            allocate((mask + 1) * 2);
+            for (int at = 0; at < old.capacity(); at += 16) {
+                long a = old.getLong(at);
+                long b = old.getLong(at + 8);
+                if (a == 0 && b == 0) continue;
+                int i = (int) a & mask;
+                while (table.getLong(i * 16) != 0 || table.getLong(i * 16 + 8) != 0) i = (i + 1) & mask;
+                table.putLong(i * 16, a);
+                table.putLong(i * 16 + 8, b);
+            }
+        }
+    }
+
+    private static long pack(String s, int i) {
+        return s.charAt(i) | (long) s.charAt(i + 1) << 16 | (long) s.charAt(i + 2) << 32 | (long) s.charAt(i + 3) << 48;
+    }
+
+    private static long fmix(long k) {
+        k ^= k >>> 33;
+        k *= 0xff51afd7ed558ccdL;
+        k ^= k >>> 33;
+        k *= 0xc4ceb9fe1a85ec53L;
+        k ^= k >>> 33;
+        return k;
+    }
+}
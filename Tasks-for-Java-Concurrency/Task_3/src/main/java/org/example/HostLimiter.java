@@ -0,0 +1,141 @@
+package org.example;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
+
+// Ограничение одновременных запросов к одному хосту. Сверх лимита запросы ждут в очереди
+// и запускаются по мере завершения текущих — потоки под них не создаются, пока не дошла очередь.
+//
+// В режиме AIMD лимит подстраивается: пока задержка держится около базовой, он растёт на
+// единицу за "окно" из limit успешных ответов; на таймауте, отказе соединения или 5xx/429 —
+// делится пополам (не чаще раза за характерную задержку, чтобы одна волна отказов не
+// обрушила его до минимума). Рост задержки выше LATENCY_TOLERANCE × базовой останавливает рост.
+final class HostLimiter {
+    // чем закончился запрос — для подстройки лимита
+    enum Outcome { OK, OVERLOAD, ERROR }
+
+    private static final double LATENCY_TOLERANCE = 2.0;
+    private static final double BACKOFF = 0.5;
+    private static final long BASELINE_WINDOW_NANOS = 10_000_000_000L;
+
+    private final String host;
+    private final Executor executor;
+    private final boolean adaptive;
+    private final int min;
+    private final int max;
+
+    private final ArrayDeque<Runnable> queue = new ArrayDeque<>();
+    private double limit;
+    private int inFlight;
+    // базовая задержка — минимум сглаженной задержки за текущее и прошлое окно по
+    // BASELINE_WINDOW_NANOS: так она следует за сменой условий, но не за очередью, которую мы
+    // сами и создаём. Минимум сырых замеров не годится: при разбросе задержек он близок к нулю
+    private long windowStart;
+    private long windowMin;
+    private long previousMin;
+    private long smoothedNanos;
+    private long lastDecrease;
+
+    private long completed;
+    private long overloads;
+
+    // adaptive == false — постоянный лимит initial
+    HostLimiter(String host, Executor executor, int initial, int min, int max, boolean adaptive) {
+        this.host = host;
+        this.executor = executor;
+        this.adaptive = adaptive;
+        this.min = Math.max(1, min);
+        this.max = Math.max(this.min, max);
+        this.limit = adaptive ? Math.min(this.max, Math.max(this.min, initial)) : Math.max(1, initial);
+    }
+
+    // Запустить запрос, как только позволит лимит; результат идёт в подстройку лимита.
+    void submit(Supplier<Outcome> request) {
+        Runnable task = () -> {
+            long start = System.nanoTime();
+            Outcome outcome = Outcome.ERROR;
+            try {
+                outcome = request.get();
+            } finally {
+                release(outcome, System.nanoTime() - start);
+            }
+        };
+        synchronized (this) {
+            if (inFlight >= (int) limit) {
+                queue.addLast(task);
+                return;
+            }
+            inFlight++;
+        }
+        start(task);
+    }
+
+    private void release(Outcome outcome, long nanos) {
+        List<Runnable> ready = new ArrayList<>();
+        synchronized (this) {
+            inFlight--;
+            completed++;
+            if (outcome == Outcome.OVERLOAD) overloads++;
+            if (adaptive) adjust(outcome, nanos);
+            while (inFlight < (int) limit && !queue.isEmpty()) {
+                ready.add(queue.pollFirst());
+                inFlight++;
+            }
+        }
+        for (Runnable r : ready) start(r);
+    }
+
+    private void start(Runnable task) {
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            // обход остановлен (таймаут) — оставшиеся запросы уже никому не нужны
+        }
+    }
+
+    // под замком
+    private void adjust(Outcome outcome, long nanos) {
+        long now = System.nanoTime();
+        if (outcome == Outcome.OVERLOAD) {
+            if (now - lastDecrease > smoothedNanos) {
+                limit = Math.max(min, limit * BACKOFF);
+                lastDecrease = now;
+            }
+            return;
+        }
+        if (outcome != Outcome.OK) return;
+        if (now - windowStart > BASELINE_WINDOW_NANOS) {
+            previousMin = windowMin;
+            windowMin = 0;
+            windowStart = now;
+        }
+        smoothedNanos = smoothedNanos == 0 ? nanos : smoothedNanos + ((nanos - smoothedNanos) >> 3);
+        if (windowMin == 0 || smoothedNanos < windowMin) windowMin = smoothedNanos;
+        long baseline = previousMin == 0 ? windowMin : Math.min(windowMin, previousMin);
+        // растём, только если очередь есть и задержка не поползла вверх
+        if (!queue.isEmpty() && smoothedNanos <= baseline * LATENCY_TOLERANCE) {
+            limit = Math.min(max, limit + 1.0 / limit);
+        }
+    }
+
+    synchronized int inFlight() {
+        return inFlight;
+    }
+
+    synchronized int queued() {
+        return queue.size();
+    }
+
+    synchronized int limit() {
+        return (int) limit;
+    }
+
+    synchronized String stats() {
+        return String.format("%s in-flight=%d queued=%d limit=%d done=%d overloads=%d latency=%.1fms",
+                host, inFlight, queue.size(), (int) limit, completed, overloads, smoothedNanos / 1e6);
+    }
+}
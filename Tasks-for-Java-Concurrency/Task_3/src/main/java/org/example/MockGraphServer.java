@@ -0,0 +1,206 @@
+package org.example;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Локальный сервис-граф для Spider на JDK HttpServer: тот же JSON {"message", "successors"},
+// что у настоящего, но граф синтетический и задаётся параметрами. Граф не хранится: узел n —
+// вершина полного fanout-арного дерева глубины depth ("/" — корень, "/n/<id>" — остальные),
+// его дети — n·fanout+1 … n·fanout+fanout. С вероятностью cycles узел ссылается ещё и на
+// случайный узел из уже пройденных уровней — это циклы и повторы для множества visited.
+// Граф детерминирован по seed; задержка и ошибки — случайны на каждый запрос.
+class MockGraphServer implements AutoCloseable {
+    public static class Options {
+        int port = 8080;
+        int depth = 6;
+        int fanout = 8;
+        double cycles = 0.1;      // доля узлов с дополнительной ссылкой назад
+        String latency = "fixed"; // fixed | uniform (0..2·mean) | exp — распределение задержки ответа
+        double latencyMs = 0;     // средняя задержка
+        double errorRate = 0;     // доля ответов 500
+        int bodyBytes = 0;        // добить тело полем "padding" до этого размера
+        long seed = 1;
+    }
+
+    private final Options opts;
+    private final long nodes;
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    private final AtomicLong served = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger peakInFlight = new AtomicInteger();
+
+    MockGraphServer(Options opts) throws IOException {
+        this.opts = opts;
+        long total = 0;
+        long level = 1;
+        for (int d = 0; d <= opts.depth; d++) {
+            total += level;
+            level *= opts.fanout;
+        }
+        this.nodes = total;
+        this.server = HttpServer.create(new InetSocketAddress(opts.port), 4096);
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+    }
+
+    void start() {
+        server.start();
+    }
+
+    int port() {
+        return server.getAddress().getPort();
+    }
+
+    // узлов в графе — столько сообщений должен собрать полный обход
+    long nodes() {
+        return nodes;
+    }
+
+    long served() {
+        return served.get();
+    }
+
+    long errors() {
+        return errors.get();
+    }
+
+    int peakInFlight() {
+        return peakInFlight.get();
+    }
+
+    private void handle(HttpExchange ex) throws IOException {
+        int now = inFlight.incrementAndGet();
+        peakInFlight.accumulateAndGet(now, Math::max);
+        try (ex) {
+            long id = nodeId(ex.getRequestURI().getPath());
+            if (id < 0 || id >= nodes) {
+                ex.sendResponseHeaders(404, -1);
+                return;
+            }
+            sleep(latencyNanos());
+            if (opts.errorRate > 0 && ThreadLocalRandom.current().nextDouble() < opts.errorRate) {
+                errors.incrementAndGet();
+                ex.sendResponseHeaders(500, -1);
+                return;
+            }
+            byte[] body = body(id);
+            ex.getResponseHeaders().set("Content-Type", "application/json");
+            ex.sendResponseHeaders(200, body.length);
+            try (OutputStream out = ex.getResponseBody()) {
+                out.write(body);
+            }
+            served.incrementAndGet();
+        } finally {
+            inFlight.decrementAndGet();
+        }
+    }
+
+    private static long nodeId(String path) {
+        if (path.equals("/")) return 0;
+        if (!path.startsWith("/n/")) return -1;
+        try {
+            return Long.parseLong(path, 3, path.length(), 10);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static String pathOf(long id) {
+        return id == 0 ? "/" : "/n/" + id;
+    }
+
+    private byte[] body(long id) {
+        StringBuilder sb = new StringBuilder(Math.max(64, opts.bodyBytes + 16));
+        sb.append("{\"message\": \"node-").append(id).append("\", \"successors\": [");
+        boolean first = true;
+        long child = id * opts.fanout + 1;
+        for (int i = 0; i < opts.fanout && child + i < nodes; i++) {
+            if (!first) sb.append(", ");
+            sb.append('"').append(pathOf(child + i)).append('"');
+            first = false;
+        }
+        SplittableRandom r = new SplittableRandom(opts.seed * 0x9E3779B97F4A7C15L + id);
+        if (id > 0 && r.nextDouble() < opts.cycles) {
+            // ссылка на случайный узел не глубже этого — в том числе на предков, то есть цикл
+            if (!first) sb.append(", ");
+            sb.append('"').append(pathOf(r.nextLong(id + 1))).append('"');
+        }
+        sb.append(']');
+        int padding = opts.bodyBytes - sb.length() - 16;
+        if (padding > 0) sb.append(", \"padding\": \"").append("x".repeat(padding)).append('"');
+        return sb.append('}').toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private long latencyNanos() {
+        if (opts.latencyMs <= 0) return 0;
+        double mean = opts.latencyMs * 1e6;
+        ThreadLocalRandom r = ThreadLocalRandom.current();
+        return (long) switch (opts.latency) {
+            case "uniform" -> r.nextDouble(2 * mean);
+            case "exp" -> -mean * Math.log(1 - r.nextDouble());
+            default -> mean;
+        };
+    }
+
+    private static void sleep(long nanos) {
+        if (nanos <= 0) return;
+        try {
+            TimeUnit.NANOSECONDS.sleep(nanos);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    // Разобрать ключ графа args[i] в opts; -1 — не ключ сервера (см. Spider.parseOption).
+    static int parseOption(String[] args, int i, Options opts) {
+        switch (args[i]) {
+            case "--port": opts.port = Integer.parseInt(args[++i]); break;
+            case "--depth": opts.depth = Integer.parseInt(args[++i]); break;
+            case "--fanout": opts.fanout = Integer.parseInt(args[++i]); break;
+            case "--cycles": opts.cycles = Double.parseDouble(args[++i]); break;
+            case "--latency": opts.latency = args[++i]; break;
+            case "--latency-ms": opts.latencyMs = Double.parseDouble(args[++i]); break;
+            case "--error-rate": opts.errorRate = Double.parseDouble(args[++i]); break;
+            case "--body-bytes": opts.bodyBytes = Integer.parseInt(args[++i]); break;
+            case "--seed": opts.seed = Long.parseLong(args[++i]); break;
+            default: return -1;
+        }
+        return i;
+    }
+
+    public static void main(String[] args) throws IOException {
+        Options opts = new Options();
+        for (int i = 0; i < args.length; i++) {
+            int last = parseOption(args, i, opts);
+            if (last < 0) {
+                System.err.println("Unknown arg " + args[i]);
+                System.exit(1);
+            }
+            i = last;
+        }
+        MockGraphServer server = new MockGraphServer(opts);
+        server.start();
+        System.out.println("Serving " + server.nodes() + " nodes on port " + server.port());
+    }
+}
@@ -0,0 +1,207 @@
+package org.example;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+// Потоковый разбор ответа узла {"message": "...", "successors": ["...", ...]} по кускам байт,
+// как они приходят из сети. Сообщение и каждый путь отдаются колбэкам сразу, как только
+// закрылась их строка, — без буферизации всего тела и без повторных проходов регулярками.
+//
+// Это не валидатор: грамматика проверяется ровно настолько, чтобы не спутать ключ со значением
+// и не выйти за вложенность. Интересны только ключи верхнего уровня "message" и "successors",
+// прочие значения (вложенные объекты, числа, литералы) пропускаются без копирования.
+// На битом JSON разбор останавливается, уже выданное остаётся выданным. Не потокобезопасен.
+final class NodeParser {
+    private static final int MAX_DEPTH = 64;
+
+    // состояния лексера
+    private static final int VALUE = 0;   // между токенами
+    private static final int STRING = 1;  // внутри строки
+    private static final int ESCAPE = 2;  // сразу после '\' в строке
+    private static final int LITERAL = 3; // число, true, false, null
+
+    private final Consumer<String> onMessage;
+    private final Consumer<String> onSuccessor;
+
+    private int state = VALUE;
+    private boolean failed;
+
+    // стек контейнеров: true — объект, false — массив
+    private final boolean[] objects = new boolean[MAX_DEPTH];
+    private int depth;
+    private boolean expectKey;
+    // ключ верхнего уровня, значение которого сейчас разбирается
+    private String field;
+
+    // байты текущей строки; копируются только строки, которые нужны
+    private byte[] text = new byte[256];
+    private int length;
+    private boolean capture;
+    private boolean escaped;
+
+    NodeParser(Consumer<String> onMessage, Consumer<String> onSuccessor) {
+        this.onMessage = onMessage;
+        this.onSuccessor = onSuccessor;
+    }
+
+    boolean failed() {
+        return failed;
+    }
+
+    // Очередной кусок тела; позиция буфера не меняется.
+    void feed(ByteBuffer chunk) {
+        if (chunk.hasArray()) {
+            feed(chunk.array(), chunk.arrayOffset() + chunk.position(), chunk.arrayOffset() + chunk.limit());
+        } else {
+            byte[] copy = new byte[chunk.remaining()];
+            chunk.get(chunk.position(), copy);
+            feed(copy, 0, copy.length);
+        }
+    }
+
+    private void feed(byte[] a, int i, int end) {
+        while (i < end && !failed) {
+            switch (state) {
+                case STRING -> {
+                    // до кавычки или '\' — одним куском
+                    int start = i;
+                    while (i < end && a[i] != '"' && a[i] != '\\') i++;
+                    append(a, start, i - start);
+                    if (i == end) return;
+                    if (a[i] == '"') {
+                        state = VALUE;
+                        string();
+                    } else {
+                        state = ESCAPE;
+                        escaped = true;
+                        append(a, i, 1);
+                    }
+                    i++;
+                }
+                case ESCAPE -> {
+                    // экранированная кавычка не закрывает строку; \\uXXXX разбирается в unescape
+                    state = STRING;
+                    append(a, i++, 1);
+                }
+                case LITERAL -> {
+                    while (i < end && !isDelimiter(a[i])) i++;
+                    if (i == end) return;
+                    state = VALUE;
+                    token(a[i++]);
+                }
+                default -> token(a[i++]);
+            }
+        }
+    }
+
+    // Тело закончилось: всё, что не закрыто, считается обрывом.
+    void finish() {
+        if (state == LITERAL && depth == 0) state = VALUE;
+        if (state != VALUE || depth != 0) failed = true;
+    }
+
+    private void token(byte b) {
+        switch (b) {
+            case ' ', '\t', '\r', '\n' -> { }
+            case '{', '[' -> {
+                if (depth == MAX_DEPTH || expectKey) {
+                    failed = true;
+                    return;
+                }
+                objects[depth++] = b == '{';
+                expectKey = b == '{';
+            }
+            case '}', ']' -> {
+                if (depth == 0 || objects[depth - 1] != (b == '}')) {
+                    failed = true;
+                    return;
+                }
+                depth--;
+                expectKey = false;
+                if (depth == 1) field = null;
+            }
+            case ',' -> expectKey = depth > 0 && objects[depth - 1];
+            case ':' -> expectKey = false;
+            case '"' -> {
+                state = STRING;
+                length = 0;
+                escaped = false;
+                capture = expectKey ? depth == 1 : wanted();
+            }
+            default -> {
+                if (expectKey) {
+                    failed = true;
+                    return;
+                }
+                state = LITERAL;
+            }
+        }
+    }
+
+    // значение, которое отдаётся наружу: message на верхнем уровне или элемент successors
+    private boolean wanted() {
+        if (depth == 1) return "message".equals(field);
+        return depth == 2 && !objects[1] && "successors".equals(field);
+    }
+
+    private void string() {
+        if (!capture) return;
+        String s = escaped ? unescape(text, length) : new String(text, 0, length, StandardCharsets.UTF_8);
+        if (expectKey) {
+            field = s;
+        } else if (depth == 1) {
+            onMessage.accept(s);
+        } else {
+            onSuccessor.accept(s);
+        }
+    }
+
+    private void append(byte[] a, int from, int n) {
+        if (!capture || n == 0) return;
+        if (length + n > text.length) text = Arrays.copyOf(text, Math.max(text.length * 2, length + n));
+        System.arraycopy(a, from, text, length, n);
+        length += n;
+    }
+
+    private static boolean isDelimiter(byte b) {
+        return b == ',' || b == '}' || b == ']' || b == ' ' || b == '\t' || b == '\r' || b == '\n';
+    }
+
+    // Escape-последовательности целиком из ASCII, поэтому сначала декодируем UTF-8, потом их.
+    // Суррогатные пары \\uD83D\\uDE00 складываются сами: это просто два char подряд.
+    static String unescape(byte[] raw, int length) {
+        String s = new String(raw, 0, length, StandardCharsets.UTF_8);
+        StringBuilder out = new StringBuilder(s.length());
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c != '\\' || i + 1 == s.length()) {
+                out.append(c);
+                continue;
+            }
+            char e = s.charAt(++i);
+            switch (e) {
+                case 'b' -> out.append('\b');
+                case 'f' -> out.append('\f');
+                case 'n' -> out.append('\n');
+                case 'r' -> out.append('\r');
+                case 't' -> out.append('\t');
+                case 'u' -> {
+                    if (i + 4 < s.length()) {
+                        try {
+                            out.append((char) Integer.parseInt(s, i + 1, i + 5, 16));
+                            i += 4;
+                            break;
+                        } catch (NumberFormatException ignored) {
+                            // не hex — оставляем как есть
+                        }
+                    }
+                    out.append('\\').append(e);
+                }
+                default -> out.append(e); // \" \\ \/
+            }
+        }
+        return out.toString();
+    }
+}
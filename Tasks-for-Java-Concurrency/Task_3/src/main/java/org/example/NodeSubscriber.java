@@ -0,0 +1,73 @@
+package org.example;
+
+import java.io.IOException;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+import java.util.function.Consumer;
+
+// BodySubscriber, который скармливает куски тела NodeParser по мере прихода: пути-преемники
+// уходят в обход ещё до того, как дочитан ответ, а тело целиком в памяти не держится.
+final class NodeSubscriber implements HttpResponse.BodySubscriber<Void> {
+    private final NodeParser parser;
+    private final CompletableFuture<Void> done = new CompletableFuture<>();
+    private Flow.Subscription subscription;
+
+    NodeSubscriber(Consumer<String> onMessage, Consumer<String> onSuccessor) {
+        this.parser = new NodeParser(onMessage, onSuccessor);
+    }
+
+    // разбираем только ответы 200, остальные дочитываются и выбрасываются
+    static HttpResponse.BodyHandler<Void> handler(Consumer<String> onMessage, Consumer<String> onSuccessor) {
+        return info -> info.statusCode() == 200
+                ? new NodeSubscriber(onMessage, onSuccessor)
+                : HttpResponse.BodySubscribers.discarding();
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        this.subscription = subscription;
+        subscription.request(1);
+    }
+
+    @Override
+    public void onNext(List<ByteBuffer> chunks) {
+        try {
+            for (ByteBuffer b : chunks) parser.feed(b);
+        } catch (RuntimeException e) {
+            // колбэк упал (например, исполнитель уже остановлен) — дальше читать незачем
+            subscription.cancel();
+            done.completeExceptionally(e);
+            return;
+        }
+        if (parser.failed()) {
+            subscription.cancel();
+            done.completeExceptionally(new IOException("Malformed JSON body"));
+            return;
+        }
+        subscription.request(1);
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        done.completeExceptionally(throwable);
+    }
+
+    @Override
+    public void onComplete() {
+        parser.finish();
+        if (parser.failed()) {
+            done.completeExceptionally(new IOException("Truncated JSON body"));
+        } else {
+            done.complete(null);
+        }
+    }
+
+    @Override
+    public CompletionStage<Void> getBody() {
+        return done;
+    }
+}
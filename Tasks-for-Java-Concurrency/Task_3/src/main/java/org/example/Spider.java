@@ -1,65 +1,141 @@
 package org.example;
 
 import java.io.IOException;
+import java.net.ConnectException;
 import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.time.Duration;
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ConcurrentSkipListSet;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 public class Spider {
-    // таймаут на весь обход
+    // таймаут на весь обход по умолчанию
     private static final long GLOBAL_TIMEOUT_SECONDS = 120L;
+    // сколько раз повторять запрос, на который хост ответил перегрузкой (таймаут, 5xx, 429)
+    private static final int OVERLOAD_RETRIES = 3;
 
-    // простой парсинг JSON-формата
-    private static final Pattern MESSAGE_PATTERN = Pattern.compile("\"message\"\\s*:\\s*\"([^\"]*)\"");
-    private static final Pattern SUCCESSORS_ARRAY_PATTERN = Pattern.compile("\"successors\"\\s*:\\s*\\[(.*)\\]", Pattern.DOTALL);
-    private static final Pattern QUOTED_STRING_PATTERN = Pattern.compile("\"([^\"]*)\"");
+    public static class Options {
+        String limit = "aimd"; // aimd — лимит подстраивается по задержке и отказам | fixed | none
+        int concurrency = 32;  // одновременных запросов к хосту; для aimd — начальное значение
+        int minConcurrency = 1;
+        int maxConcurrency = 512;
+        int progressSeconds = 0; // как часто печатать в stderr число запросов в работе и в очереди; 0 — никогда
+        long timeoutSeconds = GLOBAL_TIMEOUT_SECONDS; // 0 — без ограничения
+        Path checkpoint;         // журнал обхода; null — без журнала
+        int checkpointSeconds = 10;
+        boolean resume;          // продолжить обход из журнала checkpoint
+        String visited = "heap"; // heap | fingerprint — отпечатки вне кучи | bloom — они же с фильтром Блума
+        long expectedPaths = 1 << 16; // начальный размер множества посещённых
+    }
 
     private final HttpClient httpClient;
     private final String host;
     private final int port;
+    private final Options options;
 
     // потоки: виртуальные потоки через новый виртуальный-поток-исполнитель
     private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
 
     // отслеживание посещённых путей и накопление сообщений в сортируемом множестве
-    private final Set<String> visited = ConcurrentHashMap.newKeySet();
+    private final VisitedSet visited;
     private final Set<String> messages = new ConcurrentSkipListSet<>();
 
     // счётчик ожидающих задач
     private final AtomicInteger pending = new AtomicInteger(0);
     private final CompletableFuture<Void> doneSignal = new CompletableFuture<>();
 
+    // лимитеры запросов по хостам ("host:port")
+    private final ConcurrentMap<String, HostLimiter> limiters = new ConcurrentHashMap<>();
+
+    private Checkpoint checkpoint;
+
     public Spider(String host, int port) {
+        this(host, port, new Options());
+    }
+
+    public Spider(String host, int port, Options options) {
         this.host = host;
         this.port = port;
+        this.options = options;
+        this.visited = VisitedSet.create(options.visited, options.expectedPaths);
         this.httpClient = HttpClient.newBuilder()
                 .connectTimeout(Duration.ofSeconds(10))
                 .build();
     }
 
-    public void start(){
-        submitPath("/");
+    public void start() throws IOException {
+        List<String> frontier = null; // null — начать с корня
+        if (options.checkpoint != null) {
+            checkpoint = new Checkpoint(options.checkpoint);
+            if (options.resume) {
+                Checkpoint.State state = checkpoint.resume();
+                for (String p : state.visited) visited.add(p);
+                messages.addAll(state.messages);
+                if (!state.visited.isEmpty()) {
+                    frontier = state.frontier();
+                    System.err.println("Resumed from " + options.checkpoint + ": " + state.visited.size() + " visited, "
+                            + frontier.size() + " to fetch, " + messages.size() + " messages");
+                }
+            } else {
+                checkpoint.start();
+            }
+        }
+
+        ScheduledExecutorService background = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "spider-background");
+            t.setDaemon(true);
+            return t;
+        });
+        if (options.progressSeconds > 0) {
+            background.scheduleAtFixedRate(this::reportProgress, options.progressSeconds, options.progressSeconds, TimeUnit.SECONDS);
+        }
+        Thread flushOnExit = null;
+        if (checkpoint != null) {
+            background.scheduleAtFixedRate(this::saveCheckpoint, options.checkpointSeconds, options.checkpointSeconds, TimeUnit.SECONDS);
+            // kill (не -9) и Ctrl+C — дописать журнал перед выходом
+            flushOnExit = new Thread(this::saveCheckpoint, "spider-checkpoint");
+            Runtime.getRuntime().addShutdownHook(flushOnExit);
+        }
+
+        if (frontier == null) {
+            submitPath("/");
+        } else {
+            // держим счётчик выше нуля, пока ставим фронтир, иначе быстрые ответы закончат обход раньше
+            pending.incrementAndGet();
+            for (String path : frontier) enqueue(path);
+            if (pending.decrementAndGet() == 0) doneSignal.complete(null);
+        }
 
         // ждём завершения либо таймаут
         try {
-            doneSignal.orTimeout(GLOBAL_TIMEOUT_SECONDS, java.util.concurrent.TimeUnit.SECONDS).join();
+            CompletableFuture<Void> done = options.timeoutSeconds > 0
+                    ? doneSignal.orTimeout(options.timeoutSeconds, TimeUnit.SECONDS)
+                    : doneSignal;
+            done.join();
         } catch (Exception e) {
             // таймаут или прерывание
         } finally {
             executor.shutdownNow();
+            background.shutdownNow();
+            if (options.progressSeconds > 0) reportProgress();
+            if (checkpoint != null) {
+                checkpoint.close();
+                Runtime.getRuntime().removeShutdownHook(flushOnExit);
+            }
         }
 
         // выводим все собранные сообщения в лексикографическом порядке
@@ -68,51 +144,104 @@ public class Spider {
         }
     }
 
+    private void saveCheckpoint() {
+        try {
+            checkpoint.flush();
+        } catch (IOException e) {
+            System.err.println("Checkpoint write failed: " + e);
+        }
+    }
+
     private void submitPath(String rawPath) {
         String normalized = normalizePath(rawPath);
         // если уже посещали — не добавляем
         if (!visited.add(normalized)) return;
+        if (checkpoint != null) checkpoint.visited(normalized);
+        enqueue(normalized);
+    }
 
+    // путь уже в visited (и в журнале) — поставить в очередь хоста
+    private void enqueue(String path) {
+        URI uri;
+        try {
+            uri = buildUri(path);
+        } catch (IllegalArgumentException e) {
+            return; // путь, из которого не собрать URI, — пропускаем
+        }
         pending.incrementAndGet();
-        // создаём виртуальный поток через executor
-        executor.submit(() -> {
+        schedule(path, uri, 0);
+    }
+
+    // Виртуальный поток создаётся, когда лимитер хоста пропустит запрос; до того путь в очереди.
+    // Перегрузка — повод повторить позже: путь встаёт в конец очереди, уже при сниженном лимите.
+    private void schedule(String path, URI uri, int attempt) {
+        limiterFor(uri).submit(() -> {
+            boolean finished = true;
             try {
-                fetchAndProcess(normalized);
+                HostLimiter.Outcome outcome = fetchAndProcess(uri);
+                if (outcome == HostLimiter.Outcome.OVERLOAD && attempt < OVERLOAD_RETRIES) {
+                    finished = false;
+                    schedule(path, uri, attempt + 1);
+                } else if (outcome == HostLimiter.Outcome.OK && checkpoint != null) {
+                    // неудачные в журнале остаются во фронтире и при --resume запрашиваются снова
+                    checkpoint.done(path);
+                }
+                return outcome;
             } finally {
-                if (pending.decrementAndGet() == 0) {
+                if (finished && pending.decrementAndGet() == 0) {
                     doneSignal.complete(null);
                 }
             }
         });
     }
 
-    private void fetchAndProcess(String path) {
-        URI uri = buildUri(path);
+    private HostLimiter limiterFor(URI uri) {
+        return limiters.computeIfAbsent(uri.getAuthority(), h -> switch (options.limit) {
+            case "aimd" -> new HostLimiter(h, executor, options.concurrency,
+                    options.minConcurrency, options.maxConcurrency, true);
+            case "fixed" -> new HostLimiter(h, executor, options.concurrency, 1, options.concurrency, false);
+            case "none" -> new HostLimiter(h, executor, Integer.MAX_VALUE, 1, Integer.MAX_VALUE, false);
+            default -> throw new IllegalArgumentException("Unknown --limit " + options.limit);
+        });
+    }
+
+    private void reportProgress() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("visited=").append(visited.size()).append(" messages=").append(messages.size());
+        for (HostLimiter l : limiters.values()) sb.append("; ").append(l.stats());
+        System.err.println(sb);
+    }
+
+    private HostLimiter.Outcome fetchAndProcess(URI uri) {
         HttpRequest req = HttpRequest.newBuilder(uri)
                 .timeout(Duration.ofSeconds(20))
                 .GET()
                 .build();
 
         try {
-            // выполняем синхронный вызов в виртуальном потоке — это позволяет большой параллелизм
-            HttpResponse<String> resp = httpClient.send(req, HttpResponse.BodyHandlers.ofString());
-            if (resp.statusCode() == 200 && resp.body() != null) {
-                String body = resp.body();
-                String message = parseMessage(body);
-                if (message != null) {
-                    messages.add(message);
-                }
-                List<String> succ = parseSuccessors(body);
-                for (String s : succ) {
-                    submitPath(s);
-                }
-            }
-            // иначе игнорируем - не 200
-        } catch (IOException | InterruptedException e) {
-            // ошибки игнорируем
+            // выполняем синхронный вызов в виртуальном потоке — это позволяет большой параллелизм;
+            // тело разбирается потоково, преемники ставятся в обход, пока ответ ещё читается.
+            // Не-200 дочитываются и игнорируются
+            HttpResponse<Void> resp = httpClient.send(req, NodeSubscriber.handler(this::addMessage, this::submitPath));
+            int code = resp.statusCode();
+            // 5xx и 429 — хост не справляется, для AIMD это сигнал снизить параллелизм
+            if (code >= 500 || code == 429) return HostLimiter.Outcome.OVERLOAD;
+            return code == 200 ? HostLimiter.Outcome.OK : HostLimiter.Outcome.ERROR;
+        } catch (HttpTimeoutException | ConnectException e) {
+            return HostLimiter.Outcome.OVERLOAD;
+        } catch (IOException e) {
+            // прочие ошибки игнорируем
+            return HostLimiter.Outcome.ERROR;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return HostLimiter.Outcome.ERROR;
         }
     }
 
+    private void addMessage(String message) {
+        if (messages.add(message) && checkpoint != null) checkpoint.message(message);
+    }
+
     private URI buildUri(String path) {
         String s = String.format("http://%s:%d%s", host, port, path);
         return URI.create(s);
@@ -123,36 +252,65 @@ public class Spider {
         return p.startsWith("/") ? p : "/" + p;
     }
 
-    private String parseMessage(String json) {
-        Matcher m = MESSAGE_PATTERN.matcher(json);
-        if (m.find()) {
-            return m.group(1);
-        }
-        return null;
+    // сколько путей найдено и сколько сообщений собрано — для бенчмарков
+    long visitedCount() {
+        return visited.size();
     }
 
-    private List<String> parseSuccessors(String json) {
-        List<String> out = new ArrayList<>();
-        Matcher arrayMatcher = SUCCESSORS_ARRAY_PATTERN.matcher(json);
-        if (arrayMatcher.find()) {
-            String inside = arrayMatcher.group(1);
-            Matcher q = QUOTED_STRING_PATTERN.matcher(inside);
-            while (q.find()) {
-                out.add(q.group(1));
-            }
+    int messageCount() {
+        return messages.size();
+    }
+
+    // Разобрать ключ обхода args[i] (с его значением) в opts. Возвращает индекс последнего
+    // использованного аргумента или -1, если это не ключ Spider.
+    static int parseOption(String[] args, int i, Options opts) {
+        switch (args[i]) {
+            case "--limit": opts.limit = args[++i]; break;
+            case "--concurrency": opts.concurrency = Integer.parseInt(args[++i]); break;
+            case "--min-concurrency": opts.minConcurrency = Integer.parseInt(args[++i]); break;
+            case "--max-concurrency": opts.maxConcurrency = Integer.parseInt(args[++i]); break;
+            case "--progress": opts.progressSeconds = Integer.parseInt(args[++i]); break;
+            case "--timeout": opts.timeoutSeconds = Long.parseLong(args[++i]); break;
+            case "--checkpoint": opts.checkpoint = Paths.get(args[++i]); break;
+            case "--checkpoint-seconds": opts.checkpointSeconds = Integer.parseInt(args[++i]); break;
+            case "--resume": opts.resume = true; break;
+            case "--visited": opts.visited = args[++i]; break;
+            case "--expected-paths": opts.expectedPaths = Long.parseLong(args[++i]); break;
+            default: return -1;
         }
-        return out;
+        return i;
     }
 
-    public static void main(String[] args){
+    public static void main(String[] args) throws IOException {
         String host = "localhost";
         int port = 8080;
-        if (args.length > 0) host = args[0];
-        if (args.length > 1) {
-            try { port = Integer.parseInt(args[1]); } catch (NumberFormatException ignored) { }
+        Options opts = new Options();
+        int positional = 0;
+        for (int i = 0; i < args.length; i++) {
+            int last = parseOption(args, i, opts);
+            if (last >= 0) {
+                i = last;
+                continue;
+            }
+            if (args[i].startsWith("--")) {
+                System.err.println("Unknown arg " + args[i]);
+                System.exit(1);
+            }
+            // позиционные: host [port]
+            if (positional == 0) {
+                host = args[i];
+            } else if (positional == 1) {
+                try { port = Integer.parseInt(args[i]); } catch (NumberFormatException ignored) { }
+            }
+            positional++;
+        }
+
+        if (opts.resume && opts.checkpoint == null) {
+            System.err.println("--resume needs --checkpoint <file>");
+            System.exit(1);
         }
 
-        Spider spider = new Spider(host, port);
+        Spider spider = new Spider(host, port, opts);
         spider.start();
     }
 }
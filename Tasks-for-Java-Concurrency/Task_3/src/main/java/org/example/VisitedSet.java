@@ -0,0 +1,40 @@
+package org.example;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Множество уже найденных путей. add атомарен: при гонке двух потоков за один путь true
+// получает ровно один, и только он ставит путь в обход.
+interface VisitedSet {
+    // true — путь встретился впервые
+    boolean add(String path);
+
+    long size();
+
+    // heap — строки целиком в ConcurrentHashMap (точно, ~100+ байт на путь в куче);
+    // fingerprint — 128-битные отпечатки вне кучи (FingerprintSet);
+    // bloom — то же с фильтром Блума перед таблицей.
+    // expected — ожидаемое число путей, чтобы не расти с нуля
+    static VisitedSet create(String kind, long expected) {
+        return switch (kind) {
+            case "heap" -> new Heap();
+            case "fingerprint" -> new FingerprintSet(expected, false);
+            case "bloom" -> new FingerprintSet(expected, true);
+            default -> throw new IllegalArgumentException("Unknown visited set " + kind);
+        };
+    }
+
+    final class Heap implements VisitedSet {
+        private final Set<String> paths = ConcurrentHashMap.newKeySet();
+
+        @Override
+        public boolean add(String path) {
+            return paths.add(path);
+        }
+
+        @Override
+        public long size() {
+            return paths.size();
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package org.example;
+
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Сколько памяти занимает один посещённый путь и сколько add в секунду выдерживает каждая
+// реализация VisitedSet. Пути строятся на лету, как их отдаёт разбор ответа, и живут только
+// внутри множества — так heap-вариант платит и за сами строки, как в Spider.
+// Память: куча после GC плюс direct-буферы, до и после заполнения.
+// Скорость: --threads потоков добавляют все пути, каждый путь — по разу из каждого потока,
+// как преемник, на который ведут несколько узлов.
+class VisitedSetFootprint {
+    public static void main(String[] args) throws Exception {
+        long paths = 2_000_000;
+        int threads = Runtime.getRuntime().availableProcessors();
+        List<String> kinds = List.of("heap", "fingerprint", "bloom");
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--paths": paths = Long.parseLong(args[++i]); break;
+                case "--threads": threads = Integer.parseInt(args[++i]); break;
+                case "--kinds": kinds = List.of(args[++i].split(",")); break;
+                default: System.err.println("Unknown arg " + args[i]); System.exit(1);
+            }
+        }
+
+        for (String kind : kinds) {
+            long before = usedBytes();
+            VisitedSet set = VisitedSet.create(kind, paths);
+            long t0 = System.nanoTime();
+            long added = fill(set, paths, threads);
+            double seconds = (System.nanoTime() - t0) / 1e9;
+            long after = usedBytes();
+            if (added != paths || set.size() != paths) {
+                throw new IllegalStateException(kind + ": added " + added + ", size " + set.size() + " of " + paths);
+            }
+            System.out.printf("%-12s paths=%-10d %6.1f B/path %12.0f add/s (threads=%d)%n",
+                    kind, paths, (double) (after - before) / paths, paths * threads / seconds, threads);
+            // держим множество живым до замера
+            if (set.size() < 0) System.out.println(set);
+        }
+    }
+
+    // число add, вернувших true, — должно быть ровно paths
+    private static long fill(VisitedSet set, long paths, int threads) throws InterruptedException {
+        AtomicLong added = new AtomicLong();
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            long offset = paths * t / threads; // потоки начинают с разных мест и сталкиваются на чужих путях
+            workers.add(Thread.ofPlatform().start(() -> {
+                long mine = 0;
+                for (long i = 0; i < paths; i++) {
+                    if (set.add(path((i + offset) % paths))) mine++;
+                }
+                added.addAndGet(mine);
+            }));
+        }
+        for (Thread w : workers) w.join();
+        return added.get();
+    }
+
+    static String path(long i) {
+        return "/service/" + (i % 977) + "/node/" + i;
+    }
+
+    private static long usedBytes() throws InterruptedException {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(100);
+        }
+        long direct = 0;
+        for (BufferPoolMXBean pool : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)) {
+            if (pool.getName().equals("direct")) direct = pool.getMemoryUsed();
+        }
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed() + direct;
+    }
+}